@@ -0,0 +1,111 @@
+package application;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Perft;
+
+public class Benchmark {
+
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static int[][] moves = new int[Perft.MAX_DEPTH][BitBoard.MAX_MOVES];
+	private static int[] buffer = new int[BitBoard.MAX_MOVES];
+	private static long sink;
+
+	public static void main(String[] args) {
+		int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+
+		System.out.println("Verifying perft node counts up to depth " + depth + "...");
+		Perft.verify(depth);
+		System.out.println("OK");
+		System.out.println();
+
+		for (int i = 0; i < Perft.POSITIONS.length; i++) {
+			String fen = Perft.POSITIONS[i];
+			int d = Math.min(depth, Perft.NODES[i].length);
+			System.out.println(fen + " (depth " + d + ")");
+			measure("BitBoard.generateLegalMoves", fen, d, 0);
+			measure("BitBoard.makeMove/undoMove", fen, d, 1);
+			measure("BitBoard.isInCheck", fen, d, 2);
+			measure("BitBoard checkmate test", fen, d, 3);
+			// the object board costs far more, so one ply less
+			measure("ChessMatch.performChessMove/unmake", fen, Math.max(1, d - 1), 4);
+			System.out.println();
+		}
+	}
+
+	private static void measure(String name, String fen, int depth, int operation) {
+		BitBoard bitBoard = new BitBoard(fen);
+		ChessMatch chessMatch = new ChessMatch(fen);
+		double best = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			long start = System.nanoTime();
+			long operations = (operation == 4) ? makeUnmake(chessMatch, depth) : run(bitBoard, depth, operation);
+			long elapsed = System.nanoTime() - start;
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.max(best, operations * 1e9 / elapsed);
+			}
+		}
+		System.out.printf("  %-36s %,15.0f nodes/s%n", name, best);
+	}
+
+	private static long run(BitBoard bitBoard, int depth, int operation) {
+		switch (operation) {
+		case 0:
+			return new Perft(bitBoard).perft(depth);
+		case 1:
+			return makeUndo(bitBoard, depth);
+		default:
+			return walk(bitBoard, depth, operation == 3);
+		}
+	}
+
+	private static long makeUndo(BitBoard bitBoard, int depth) {
+		int[] list = moves[depth - 1];
+		int n = bitBoard.generateLegalMoves(list);
+		long count = 0;
+		for (int i = 0; i < n; i++) {
+			bitBoard.makeMove(list[i]);
+			count += (depth > 1) ? makeUndo(bitBoard, depth - 1) + 1 : 1;
+			bitBoard.undoMove(list[i]);
+		}
+		return count;
+	}
+
+	// the path a game takes: legal moves from the match, each played on both
+	// boards with the check and mate tests, then taken back
+	private static long makeUnmake(ChessMatch chessMatch, int depth) {
+		int[] list = moves[depth - 1];
+		int n = chessMatch.legalMoves(list);
+		long count = 0;
+		for (int i = 0; i < n; i++) {
+			chessMatch.performChessMove(list[i]);
+			count += (depth > 1) ? makeUnmake(chessMatch, depth - 1) + 1 : 1;
+			chessMatch.unmake();
+		}
+		return count;
+	}
+
+	private static long walk(BitBoard bitBoard, int depth, boolean checkMate) {
+		if (checkMate) {
+			if (bitBoard.isInCheck() && bitBoard.generateLegalMoves(buffer) == 0) {
+				sink++;
+			}
+		} else if (bitBoard.isInCheck()) {
+			sink++;
+		}
+		if (depth == 1) {
+			return 1;
+		}
+		int[] list = moves[depth - 1];
+		int n = bitBoard.generateLegalMoves(list);
+		long count = 1;
+		for (int i = 0; i < n; i++) {
+			bitBoard.makeMove(list[i]);
+			count += walk(bitBoard, depth - 1, checkMate);
+			bitBoard.undoMove(list[i]);
+		}
+		return count;
+	}
+}
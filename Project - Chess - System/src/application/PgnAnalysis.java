@@ -0,0 +1,32 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import chess.pgn.PgnAnalyzer;
+import chess.pgn.PgnReport;
+
+public class PgnAnalysis {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: PgnAnalysis <file.pgn> [threads] [chunks in flight]");
+			return;
+		}
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int inFlight = (args.length > 2) ? Integer.parseInt(args[2]) : threads * 2;
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			long start = System.nanoTime();
+			PgnReport report = new PgnAnalyzer(pool, inFlight).analyze(Paths.get(args[0]));
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(report);
+			System.out.printf("%d threads, %.2f s, %,.0f games/s, %,.0f moves/s%n", threads, seconds,
+					report.getGames() / seconds, report.getMoves() / seconds);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
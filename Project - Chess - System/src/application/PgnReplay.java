@@ -0,0 +1,39 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import chess.ChessMatch;
+import chess.pgn.PgnException;
+import chess.pgn.PgnReader;
+
+public class PgnReplay {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: PgnReplay <file.pgn>");
+			return;
+		}
+
+		ChessMatch chessMatch = new ChessMatch();
+		long illegal = 0;
+		long start = System.nanoTime();
+		try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+			while (true) {
+				try {
+					if (!reader.nextGame(chessMatch)) {
+						break;
+					}
+				} catch (PgnException e) {
+					illegal++;
+					System.out.println(e.getMessage());
+				}
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%,d games, %,d moves, %,d illegal games in %.2f s%n", reader.getGames(),
+					reader.getMoves(), illegal, seconds);
+			System.out.printf("%,.0f games/s, %,.0f moves/s%n", reader.getGames() / seconds,
+					reader.getMoves() / seconds);
+		}
+	}
+}
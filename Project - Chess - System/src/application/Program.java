@@ -9,21 +9,68 @@ import chess.ChessException;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.Color;
+import chess.Move;
+import chess.engine.Ponderer;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
 
 public class Program {
 
+	private static final long DEFAULT_THINK_TIME = 3000;
+	private static final int HASH_MEGABYTES = 64;
+
+	// with arguments the engine plays one side, as in "Program BLACK 3000" for
+	// black with three seconds a move, and ponders while the human thinks
 	public static void main(String[] args) {
 
 		Scanner sc = new Scanner(System.in);
 		ChessMatch chessMatch = new ChessMatch();
 		List<ChessPiece> captured = new ArrayList<>();
 
-		while (!chessMatch.getCheckMate()) {
+		Color engineColor = (args.length > 0) ? Color.valueOf(args[0].toUpperCase()) : null;
+		long thinkTime = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_THINK_TIME;
+		// a game between two humans needs neither the table nor the threads
+		Search search = null;
+		Ponderer ponderer = null;
+		if (engineColor != null) {
+			search = new Search(new TranspositionTable(HASH_MEGABYTES));
+			ponderer = new Ponderer(search);
+		}
+		String engineMove = null;
+
+		while (!chessMatch.getCheckMate() && !chessMatch.getStaleMate()) {
+
+			if (chessMatch.getCurrentPlayer() == engineColor) {
+				// a correct guess has already searched the position, possibly long enough
+				SearchResult result = ponderer.stop(chessMatch.getPosition());
+				long remaining = thinkTime - ((result != null) ? result.getElapsed() : 0);
+				if (result == null || (remaining > 0 && result.getDepth() < Search.MAX_PLY - 1)) {
+					result = search.search(chessMatch, 0, Math.max(remaining, 1));
+				}
+				if (result.getBestMove() == Move.NONE) {
+					break;
+				}
+				ChessPiece capturedPiece = chessMatch.performChessMove(result.getBestMove());
+				if (capturedPiece != null) {
+					captured.add(capturedPiece);
+				}
+				engineMove = Move.toString(result.getBestMove());
+				int[] pv = result.getPrincipalVariation();
+				if (!chessMatch.getCheckMate() && !chessMatch.getStaleMate()) {
+					ponderer.start(chessMatch.getPosition(), (pv.length > 1) ? pv[1] : Move.NONE);
+				}
+				continue;
+			}
 
 			try {
 				UI.clearScreen();
 				UI.printMatch(chessMatch, captured);
 				System.out.println();
+				if (engineMove != null) {
+					System.out.println("Engine played " + engineMove);
+				}
 				System.out.print("Source: ");
 				ChessPosition source = UI.readChessPosition(sc);
 
@@ -59,6 +106,9 @@ public class Program {
 			}
 		}
 
+		if (ponderer != null) {
+			ponderer.stop();
+		}
 		UI.clearScreen();
 		UI.printMatch(chessMatch, captured);
 
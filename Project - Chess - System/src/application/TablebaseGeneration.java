@@ -0,0 +1,37 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import chess.tablebase.TablebaseGenerator;
+import chess.tablebase.TablebaseReport;
+
+public class TablebaseGeneration {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: TablebaseGeneration <directory> <ending>... (as in KQvK KRvK KPvK)");
+			return;
+		}
+		Path directory = Files.createDirectories(Paths.get(args[0]));
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			TablebaseGenerator generator = new TablebaseGenerator(pool);
+			for (int i = 1; i < args.length; i++) {
+				generator.generate(args[i]);
+			}
+			generator.write(directory);
+			System.out.println(threads + " threads");
+			for (TablebaseReport report : generator.getReports()) {
+				System.out.println(report);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -59,7 +59,10 @@ public class UI {
 		printCapturedChessPieces(captured);
 		System.out.println();
 		System.out.println("Turn: " + chessMatch.getTurn());
-		if(!chessMatch.getCheckMate()) {
+		if (chessMatch.getStaleMate()) {
+			System.out.println("STALEMATE!");
+			System.out.println("Draw, " + chessMatch.getCurrentPlayer() + " has no possible move");
+		} else if(!chessMatch.getCheckMate()) {
 			System.out.println("Waiting Player: " + chessMatch.getCurrentPlayer());
 			if (chessMatch.getCheck()) {
 				System.out.println("CHECK!");
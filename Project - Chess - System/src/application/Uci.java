@@ -0,0 +1,413 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+import chess.BitBoard;
+import chess.ChessException;
+import chess.Move;
+import chess.Perft;
+import chess.book.OpeningBook;
+import chess.engine.ParallelSearch;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import chess.tablebase.TablebaseGenerator;
+import chess.tablebase.TablebaseProber;
+
+// Universal Chess Interface on stdin and stdout, for GUIs and tournament managers.
+// Commands are read on the main thread while a search runs on its own, so stop
+// and isready are answered at once; output is buffered and flushed per line.
+public class Uci {
+
+	private static final String NAME = "Chess System";
+	private static final int DEFAULT_HASH = 64;
+	private static final int MAX_HASH = TranspositionTable.MAX_MEGABYTES;
+	private static final int MAX_THREADS = 256;
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	private static final long MOVE_OVERHEAD = 30;
+	private static final int DEFAULT_BENCH_DEPTH = 8;
+
+	private BufferedReader in;
+	private PrintWriter out;
+
+	private TranspositionTable transpositionTable = new TranspositionTable(DEFAULT_HASH);
+	private ParallelSearch search = new ParallelSearch(transpositionTable, 1);
+	private BitBoard position = new BitBoard(BitBoard.START_FEN);
+	private int[] moves = new int[BitBoard.MAX_MOVES];
+	private volatile Thread searchThread;
+	// go infinite and go ponder hold their bestmove until stop or ponderhit,
+	// as the protocol requires even when the search ends on its own
+	private CountDownLatch release;
+	private boolean pondering;
+	private long ponderTimeLimit;
+
+	public Uci(BufferedReader in, PrintWriter out) {
+		this.in = in;
+		this.out = out;
+		search.setIterationListener(this::sendInfo);
+	}
+
+	public static void main(String[] args) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+		PrintWriter out = new PrintWriter(
+				new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+		Uci uci = new Uci(in, out);
+		if (args.length > 0) {
+			// "Uci bench 10" runs a command and exits
+			uci.execute(String.join(" ", args));
+			uci.stopSearch();
+		} else {
+			uci.run();
+		}
+		out.flush();
+	}
+
+	public void run() throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!execute(line.trim())) {
+				break;
+			}
+		}
+		stopSearch();
+		search.shutdown();
+	}
+
+	// returns false on quit
+	public boolean execute(String line) {
+		String[] tokens = line.split("\\s+");
+		try {
+			switch (tokens[0]) {
+			case "uci":
+				send("id name " + NAME);
+				send("id author " + NAME + " contributors");
+				send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+				send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+				send("option name Clear Hash type button");
+				send("option name Ponder type check default false");
+				send("option name BookFile type string default <empty>");
+				send("option name TablebasePath type string default <empty>");
+				send("uciok");
+				break;
+			case "isready":
+				send("readyok");
+				break;
+			case "ucinewgame":
+				stopSearch();
+				transpositionTable.clear();
+				break;
+			case "setoption":
+				stopSearch();
+				setOption(tokens);
+				break;
+			case "position":
+				stopSearch();
+				setPosition(tokens);
+				break;
+			case "go":
+				stopSearch();
+				go(tokens);
+				break;
+			case "stop":
+				stopSearch();
+				break;
+			case "ponderhit":
+				ponderHit();
+				break;
+			case "bench":
+				stopSearch();
+				bench((tokens.length > 1) ? Integer.parseInt(tokens[1]) : DEFAULT_BENCH_DEPTH);
+				break;
+			case "d":
+				send(position.toFen());
+				break;
+			case "quit":
+				return false;
+			default:
+				if (!tokens[0].isEmpty()) {
+					send("info string Unknown command: " + line);
+				}
+			}
+		} catch (ChessException | IllegalArgumentException | IndexOutOfBoundsException | UncheckedIOException e) {
+			send("info string " + e.getMessage());
+		}
+		return true;
+	}
+
+	private void setOption(String[] tokens) {
+		String name = "";
+		String value = "";
+		for (int i = 1; i < tokens.length; i++) {
+			if (tokens[i].equals("name")) {
+				while (++i < tokens.length && !tokens[i].equals("value")) {
+					name += (name.isEmpty() ? "" : " ") + tokens[i];
+				}
+			}
+			if (i < tokens.length && tokens[i].equals("value")) {
+				while (++i < tokens.length) {
+					value += (value.isEmpty() ? "" : " ") + tokens[i];
+				}
+			}
+		}
+		switch (name.toLowerCase()) {
+		case "hash":
+			int megabytes = Math.max(1, Math.min(MAX_HASH, Integer.parseInt(value)));
+			transpositionTable = new TranspositionTable(megabytes);
+			ParallelSearch resized = new ParallelSearch(transpositionTable, search.getThreads());
+			resized.setOpeningBook(search.getOpeningBook());
+			resized.setTablebases(search.getTablebases());
+			resized.setIterationListener(this::sendInfo);
+			search.shutdown();
+			search = resized;
+			break;
+		case "threads":
+			search.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value))));
+			break;
+		case "clear hash":
+			transpositionTable.clear();
+			break;
+		case "ponder":
+			// only announces that go ponder may come, nothing to set up
+			break;
+		case "bookfile":
+			try {
+				search.setOpeningBook(isEmpty(value) ? null : new OpeningBook(Paths.get(value)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			break;
+		case "tablebasepath":
+			search.setTablebases(isEmpty(value) ? null
+					: new TablebaseProber(Paths.get(value), TablebaseGenerator.MAX_PIECES));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown option " + name);
+		}
+	}
+
+	private static boolean isEmpty(String value) {
+		return value.isEmpty() || value.equals("<empty>");
+	}
+
+	// position [startpos | fen <fen>] [moves <move>...]
+	private void setPosition(String[] tokens) {
+		int i = 1;
+		String fen = BitBoard.START_FEN;
+		if (i < tokens.length && tokens[i].equals("fen")) {
+			StringBuilder sb = new StringBuilder();
+			while (++i < tokens.length && !tokens[i].equals("moves")) {
+				sb.append(tokens[i]).append(' ');
+			}
+			fen = sb.toString().trim();
+		} else if (i < tokens.length && tokens[i].equals("startpos")) {
+			i++;
+		}
+		BitBoard next = new BitBoard(fen);
+		if (i < tokens.length && tokens[i].equals("moves")) {
+			while (++i < tokens.length) {
+				next.makeMove(parseMove(next, tokens[i]));
+			}
+		}
+		position = next;
+	}
+
+	private int parseMove(BitBoard bitBoard, String s) {
+		int count = bitBoard.generateLegalMoves(moves);
+		for (int i = 0; i < count; i++) {
+			if (Move.toString(moves[i]).equals(s)) {
+				return moves[i];
+			}
+		}
+		throw new ChessException("Illegal move " + s);
+	}
+
+	// go [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>]
+	// [movetime <ms>] [depth <n>] [infinite] [ponder]
+	private void go(String[] tokens) {
+		long time = 0;
+		long increment = 0;
+		long moveTime = 0;
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		int depth = 0;
+		boolean infinite = false;
+		boolean ponder = false;
+		boolean white = position.getSideToMove() == BitBoard.WHITE;
+		for (int i = 1; i < tokens.length; i++) {
+			switch (tokens[i]) {
+			case "wtime":
+			case "btime":
+				long t = Long.parseLong(tokens[++i]);
+				if (tokens[i - 1].equals(white ? "wtime" : "btime")) {
+					time = t;
+				}
+				break;
+			case "winc":
+			case "binc":
+				long inc = Long.parseLong(tokens[++i]);
+				if (tokens[i - 1].equals(white ? "winc" : "binc")) {
+					increment = inc;
+				}
+				break;
+			case "movestogo":
+				movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+				break;
+			case "movetime":
+				moveTime = Long.parseLong(tokens[++i]);
+				break;
+			case "depth":
+				depth = Integer.parseInt(tokens[++i]);
+				break;
+			case "infinite":
+				infinite = true;
+				break;
+			case "ponder":
+				ponder = true;
+				break;
+			default:
+				break;
+			}
+		}
+		long timeLimit = 0;
+		if (moveTime > 0) {
+			timeLimit = Math.max(1, moveTime - MOVE_OVERHEAD);
+		} else if (time > 0) {
+			timeLimit = Math.max(1, Math.min(time / movesToGo + increment * 3 / 4, time - MOVE_OVERHEAD));
+		}
+
+		// a ponder search runs unlimited until ponderhit hands it its time
+		pondering = ponder;
+		ponderTimeLimit = timeLimit;
+		if (infinite || ponder) {
+			timeLimit = 0;
+		}
+		CountDownLatch held = (infinite || ponder) ? new CountDownLatch(1) : null;
+		release = held;
+
+		BitBoard root = new BitBoard(position);
+		int maxDepth = depth;
+		long limit = timeLimit;
+		searchThread = new Thread(() -> {
+			int bestMove = Move.NONE;
+			int ponderMove = Move.NONE;
+			try {
+				SearchResult result = search.search(root, maxDepth, limit);
+				sendInfo(result);
+				int[] pv = result.getPrincipalVariation();
+				bestMove = result.getBestMove();
+				ponderMove = (pv.length > 1) ? pv[1] : Move.NONE;
+			} catch (RuntimeException e) {
+				// the GUI waits for a bestmove whatever happened
+				send("info string Search failed: " + e);
+			}
+			if (held != null) {
+				try {
+					held.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			send("bestmove " + Move.toString(bestMove)
+					+ ((ponderMove != Move.NONE) ? " ponder " + Move.toString(ponderMove) : ""));
+		}, "uci-search");
+		searchThread.start();
+	}
+
+	// the expected move was played: the held bestmove may go out as soon as the
+	// search ends, which is after the time the go ponder command gave it
+	private void ponderHit() {
+		Thread thread = searchThread;
+		if (thread == null || !pondering) {
+			return;
+		}
+		pondering = false;
+		release.countDown();
+		if (ponderTimeLimit > 0) {
+			long limit = ponderTimeLimit;
+			Thread stopper = new Thread(() -> {
+				try {
+					Thread.sleep(limit);
+				} catch (InterruptedException e) {
+					return;
+				}
+				// only while that search is still the current one, see stopSearch
+				synchronized (this) {
+					if (searchThread == thread) {
+						search.stop();
+					}
+				}
+			}, "uci-ponderhit");
+			stopper.setDaemon(true);
+			stopper.start();
+		}
+	}
+
+	private void stopSearch() {
+		if (searchThread == null) {
+			return;
+		}
+		search.stop();
+		if (release != null) {
+			release.countDown();
+		}
+		try {
+			searchThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		// a late stop from ponderHit lands before this and is cleared with the rest
+		synchronized (this) {
+			search.clearStop();
+			searchThread = null;
+		}
+	}
+
+	private void bench(int depth) {
+		long nodes = 0;
+		long elapsed = 0;
+		for (String fen : Perft.POSITIONS) {
+			transpositionTable.clear();
+			SearchResult result = search.search(new BitBoard(fen), depth, 0);
+			sendInfo(result);
+			nodes += result.getNodes();
+			elapsed += result.getElapsed();
+		}
+		send("Nodes searched  : " + nodes);
+		send("Time (ms)       : " + elapsed);
+		send("Nodes/second    : " + ((elapsed > 0) ? nodes * 1000 / elapsed : nodes));
+	}
+
+	private void sendInfo(SearchResult result) {
+		StringBuilder sb = new StringBuilder("info depth ").append(result.getDepth());
+		int score = result.getScore();
+		if (Math.abs(score) >= Search.MATE - Search.MAX_PLY) {
+			int plies = Search.MATE - Math.abs(score);
+			sb.append(" score mate ").append((score > 0) ? (plies + 1) / 2 : -(plies / 2));
+		} else {
+			sb.append(" score cp ").append(score);
+		}
+		sb.append(" nodes ").append(result.getNodes());
+		sb.append(" nps ").append(result.getNodesPerSecond());
+		sb.append(" time ").append(result.getElapsed());
+		sb.append(" hashfull ").append(transpositionTable.hashfull());
+		sb.append(" pv");
+		for (int move : result.getPrincipalVariation()) {
+			sb.append(' ').append(Move.toString(move));
+		}
+		send(sb.toString());
+	}
+
+	private synchronized void send(String line) {
+		out.println(line);
+		out.flush();
+	}
+}
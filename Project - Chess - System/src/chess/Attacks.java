@@ -0,0 +1,209 @@
+package chess;
+
+public final class Attacks {
+
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long FILE_H = FILE_A << 7;
+
+	private static final long NOT_A = ~FILE_A;
+	private static final long NOT_AB = ~(FILE_A | (FILE_A << 1));
+	private static final long NOT_H = ~FILE_H;
+	private static final long NOT_GH = ~(FILE_H | (FILE_H >>> 1));
+
+	private static final long[] PAWN_ATTACKS = new long[2 * 64];
+	private static final long[] KNIGHT_ATTACKS = new long[64];
+	private static final long[] KING_ATTACKS = new long[64];
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			long b = 1L << square;
+			PAWN_ATTACKS[BitBoard.WHITE * 64 + square] = pawns(BitBoard.WHITE, b);
+			PAWN_ATTACKS[BitBoard.BLACK * 64 + square] = pawns(BitBoard.BLACK, b);
+			KNIGHT_ATTACKS[square] = ((b << 17) & NOT_A) | ((b << 15) & NOT_H) | ((b << 10) & NOT_AB)
+					| ((b << 6) & NOT_GH) | ((b >>> 17) & NOT_H) | ((b >>> 15) & NOT_A) | ((b >>> 10) & NOT_GH)
+					| ((b >>> 6) & NOT_AB);
+			KING_ATTACKS[square] = (b << 8) | (b >>> 8) | ((b << 1) & NOT_A) | ((b >>> 1) & NOT_H)
+					| ((b << 9) & NOT_A) | ((b << 7) & NOT_H) | ((b >>> 7) & NOT_A) | ((b >>> 9) & NOT_H);
+		}
+	}
+
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+	// https://www.chessprogramming.org/Magic_Bitboards
+	private static final long[] ROOK_MASKS = new long[64];
+	private static final long[] ROOK_MAGICS = {
+			0x0980008011400020L, 0x8340004410002000L, 0x0880200090008268L, 0x0080080080100004L,
+			0x8100110004020800L, 0x0300010004000822L, 0x08801A0029000080L, 0x8100050001204882L,
+			0x0844800081400320L, 0x0804402010004000L, 0x0108802003100480L, 0x5C00808010000800L,
+			0x0003001801001014L, 0x0002000200041008L, 0x0004008108042210L, 0x0105000100009042L,
+			0x0400808000400021L, 0xC100404010002000L, 0x0060008010002088L, 0x0400808008001000L,
+			0x4440808008000400L, 0x1002008004000280L, 0x40024400300D1248L, 0x0010020000408104L,
+			0x0101008200204200L, 0x8020002040005000L, 0x4100100080802000L, 0x4008006A80100280L,
+			0x0021008500100800L, 0x5000040080800200L, 0x0010040101000200L, 0x6140004200008104L,
+			0x4000400020800090L, 0x2020002080804000L, 0x0000408202002010L, 0x0080100501000820L,
+			0x0004040080800800L, 0xA01A800200800400L, 0x0014820104009008L, 0x0008004082000401L,
+			0x0029804004608010L, 0x0140002000818048L, 0x000C410420010014L, 0x0020100008008080L,
+			0x8000080004008080L, 0x0082008004008002L, 0x1002000801020004L, 0x0010848505620004L,
+			0x0000801840002080L, 0x2002010C80403200L, 0x9000114220010300L, 0x0001000820100100L,
+			0x000A800401080080L, 0xC001400410200801L, 0x4800480102300400L, 0x1000010040840200L,
+			0x0002800442162101L, 0x4000810010204202L, 0x0400201200084082L, 0x8200210004081001L,
+			0x1002001004200802L, 0x0005000208040001L, 0x0002002701AC0822L, 0x000010250184004AL };
+	private static final int[] ROOK_SHIFTS = new int[64];
+	private static final long[][] ROOK_TABLE = new long[64][];
+	private static final long[] BISHOP_MASKS = new long[64];
+	private static final long[] BISHOP_MAGICS = {
+			0x4014700208012480L, 0x0220014200A10001L, 0x8108084040806120L, 0x200E0A02001A00C0L,
+			0x4442021080243000L, 0x4C00901008100050L, 0x0800821110404840L, 0x0000120222024003L,
+			0x008A08A041020200L, 0x000118460C0428A0L, 0x0000314B06020022L, 0x0804180481080025L,
+			0x0000340520004880L, 0x0440309004200008L, 0x2108084402A01000L, 0x0328024422082200L,
+			0xC21200C004310C00L, 0x460840040820C400L, 0x0010004A02720020L, 0x000800488A044044L,
+			0x0025000A9040000AL, 0x0009010600822104L, 0x0021040400821002L, 0x0801000A19010120L,
+			0x0004048210915000L, 0x0310222005242C05L, 0x00544800101C8010L, 0x2308080000820003L,
+			0x2008820004010401L, 0x0650110244208800L, 0x0009324401080802L, 0x01008022A6010C40L,
+			0x8081200804200940L, 0x300C040305200240L, 0x0002062200240800L, 0x2801400A00042200L,
+			0x14090104000202A0L, 0x05B0020080081048L, 0x0A10010910020880L, 0xC403020222060B00L,
+			0x260D301250402080L, 0x0000A80802088800L, 0x0001008041023000L, 0x0000020202016420L,
+			0x0008540502140400L, 0x0201101008400B80L, 0x0104104202000058L, 0x0002080101000031L,
+			0x4200A20120200004L, 0x0004208410090400L, 0x10A0182508088000L, 0x1814081420880800L,
+			0x1008810850340611L, 0x0081482248020610L, 0x0009080800940000L, 0x0060010240890800L,
+			0x048A920802080500L, 0x26000E9204900404L, 0x200002A080482200L, 0xAC8018422020A808L,
+			0x929A000440A50308L, 0x41801040826C0110L, 0x0140C01081010101L, 0xC0A0012206040EA0L };
+	private static final int[] BISHOP_SHIFTS = new int[64];
+	private static final long[][] BISHOP_TABLE = new long[64][];
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			initMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+			initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+		}
+	}
+
+	private static final long[] BETWEEN = new long[64 * 64];
+	private static final long[] LINE = new long[64 * 64];
+
+	static {
+		for (int a = 0; a < 64; a++) {
+			long rook = rook(a, 0L);
+			long bishop = bishop(a, 0L);
+			for (int b = 0; b < 64; b++) {
+				long bit = 1L << b;
+				if ((rook & bit) != 0) {
+					BETWEEN[a * 64 + b] = rook(a, bit) & rook(b, 1L << a);
+					LINE[a * 64 + b] = (rook & rook(b, 0L)) | (1L << a) | bit;
+				} else if ((bishop & bit) != 0) {
+					BETWEEN[a * 64 + b] = bishop(a, bit) & bishop(b, 1L << a);
+					LINE[a * 64 + b] = (bishop & bishop(b, 0L)) | (1L << a) | bit;
+				}
+			}
+		}
+	}
+
+	private Attacks() {
+	}
+
+	// squares strictly between two aligned squares, empty if they are not aligned
+	public static long between(int a, int b) {
+		return BETWEEN[a * 64 + b];
+	}
+
+	// the whole rank, file or diagonal through two aligned squares
+	public static long line(int a, int b) {
+		return LINE[a * 64 + b];
+	}
+
+	public static long pawn(int color, int square) {
+		return PAWN_ATTACKS[color * 64 + square];
+	}
+
+	public static long pawns(int color, long pawns) {
+		if (color == BitBoard.WHITE) {
+			return ((pawns << 7) & NOT_H) | ((pawns << 9) & NOT_A);
+		}
+		return ((pawns >>> 9) & NOT_H) | ((pawns >>> 7) & NOT_A);
+	}
+
+	public static long knight(int square) {
+		return KNIGHT_ATTACKS[square];
+	}
+
+	public static long king(int square) {
+		return KING_ATTACKS[square];
+	}
+
+	public static long bishop(int square, long occupied) {
+		return BISHOP_TABLE[square][(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square])
+				>>> BISHOP_SHIFTS[square])];
+	}
+
+	public static long rook(int square, long occupied) {
+		return ROOK_TABLE[square][(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square])
+				>>> ROOK_SHIFTS[square])];
+	}
+
+	public static long queen(int square, long occupied) {
+		return bishop(square, occupied) | rook(square, occupied);
+	}
+
+	// fills the table slot of every blocker subset of the relevant mask; the
+	// magics above were searched offline to map them without destructive collisions
+	private static void initMagic(int square, int[][] directions, long[] masks, long[] magics, int[] shifts,
+			long[][] tables) {
+		long mask = 0L;
+		for (int[] direction : directions) {
+			mask |= ray(square, 0L, direction[0], direction[1], true);
+		}
+		int bits = Long.bitCount(mask);
+		int size = 1 << bits;
+		long[] occupancies = new long[size];
+		long[] reference = new long[size];
+		long subset = 0L;
+		for (int i = 0; i < size; i++) {
+			occupancies[i] = subset;
+			for (int[] direction : directions) {
+				reference[i] |= ray(square, subset, direction[0], direction[1], false);
+			}
+			subset = (subset - mask) & mask;
+		}
+
+		long[] table = new long[size];
+		boolean[] used = new boolean[size];
+		int shift = 64 - bits;
+		for (int i = 0; i < size; i++) {
+			int index = (int) ((occupancies[i] * magics[square]) >>> shift);
+			if (used[index] && table[index] != reference[i]) {
+				throw new IllegalStateException("Bad magic for square " + square);
+			}
+			used[index] = true;
+			table[index] = reference[i];
+		}
+		masks[square] = mask;
+		shifts[square] = shift;
+		tables[square] = table;
+	}
+
+	// with relevantOnly the last square of the ray is left out, since a blocker
+	// on the board edge never changes the attack set
+	private static long ray(int square, long occupied, int rankStep, int fileStep, boolean relevantOnly) {
+		long attacks = 0L;
+		int rank = (square >>> 3) + rankStep;
+		int file = (square & 7) + fileStep;
+		while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+			if (relevantOnly) {
+				int nextRank = rank + rankStep;
+				int nextFile = file + fileStep;
+				if (nextRank < 0 || nextRank > 7 || nextFile < 0 || nextFile > 7) {
+					break;
+				}
+			}
+			long bit = 1L << (rank * 8 + file);
+			attacks |= bit;
+			if ((occupied & bit) != 0) {
+				break;
+			}
+			rank += rankStep;
+			file += fileStep;
+		}
+		return attacks;
+	}
+}
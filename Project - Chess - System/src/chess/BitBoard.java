@@ -0,0 +1,899 @@
+package chess;
+
+import java.util.Arrays;
+
+import boardgame.Position;
+import chess.pieces.Bishop;
+import chess.pieces.King;
+import chess.pieces.Knight;
+import chess.pieces.Pawn;
+import chess.pieces.Queen;
+
+public class BitBoard {
+
+	public static final int WHITE = 0;
+	public static final int BLACK = 1;
+
+	public static final int PAWN = 0;
+	public static final int KNIGHT = 1;
+	public static final int BISHOP = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+
+	public static final int NO_PIECE = -1;
+	public static final int NO_SQUARE = -1;
+
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+	public static final int ALL_CASTLING = 15;
+
+	public static final int MAX_MOVES = 256;
+
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final int[] CASTLING_MASK = new int[64];
+	private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+	private static final String CASTLING_CHARS = "KQkq";
+
+	static {
+		Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+		CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+		CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+		CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+		CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+	}
+
+	// one word per color and piece type, indexed by color * 6 + type
+	private long[] pieces = new long[12];
+	private long[] occupancy = new long[2];
+	private long occupied;
+	private int[] squares = new int[64];
+	private int[] kingSquares = { NO_SQUARE, NO_SQUARE };
+
+	private int sideToMove;
+	private int castlingRights;
+	private int enPassantSquare = NO_SQUARE;
+	private int halfmoveClock;
+	private int fullmoveNumber = 1;
+	private long hash;
+
+	// material and piece-square sums from white's point of view, kept up to date
+	// as pieces are put and cleared
+	private int middlegame;
+	private int endgame;
+	private int phase;
+
+	// squares attacked by each color, recomputed on demand after a move and
+	// restored from the history when the move is taken back
+	private long[] attacks = new long[2];
+	private boolean attacksValid;
+
+	// one record of HISTORY_STRIDE longs per ply: the packed irreversible state
+	// (see pack), the hash and both attack maps from before the move
+	private static final int HISTORY_STRIDE = 4;
+
+	private int ply;
+	private long[] history = new long[256 * HISTORY_STRIDE];
+
+	public BitBoard() {
+		Arrays.fill(squares, NO_PIECE);
+	}
+
+	public BitBoard(BitBoard other) {
+		pieces = other.pieces.clone();
+		occupancy = other.occupancy.clone();
+		occupied = other.occupied;
+		squares = other.squares.clone();
+		kingSquares = other.kingSquares.clone();
+		sideToMove = other.sideToMove;
+		castlingRights = other.castlingRights;
+		enPassantSquare = other.enPassantSquare;
+		halfmoveClock = other.halfmoveClock;
+		fullmoveNumber = other.fullmoveNumber;
+		hash = other.hash;
+		middlegame = other.middlegame;
+		endgame = other.endgame;
+		phase = other.phase;
+		ply = other.ply;
+		history = other.history.clone();
+		attacks = other.attacks.clone();
+		attacksValid = other.attacksValid;
+	}
+
+	public BitBoard(String fen) {
+		this();
+		loadFen(fen);
+	}
+
+	public void loadFen(String fen) {
+		Arrays.fill(pieces, 0L);
+		Arrays.fill(occupancy, 0L);
+		Arrays.fill(squares, NO_PIECE);
+		Arrays.fill(kingSquares, NO_SQUARE);
+		occupied = 0L;
+		hash = 0L;
+		middlegame = 0;
+		endgame = 0;
+		phase = 0;
+		ply = 0;
+		attacksValid = false;
+
+		int i = 0;
+		int rank = 7;
+		int file = 0;
+		try {
+			for (; fen.charAt(i) != ' '; i++) {
+				char c = fen.charAt(i);
+				if (c == '/') {
+					rank--;
+					file = 0;
+				} else if (c >= '1' && c <= '8') {
+					file += c - '0';
+				} else {
+					int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+					if (type < 0 || rank < 0 || file > 7) {
+						throw new ChessException("Invalid FEN: " + fen);
+					}
+					placePiece(Character.isUpperCase(c) ? WHITE : BLACK, type, rank * 8 + file);
+					file++;
+				}
+			}
+			char side = fen.charAt(++i);
+			if (side != 'w' && side != 'b') {
+				throw new ChessException("Invalid FEN: " + fen);
+			}
+			sideToMove = (side == 'b') ? BLACK : WHITE;
+			i += 2;
+			castlingRights = 0;
+			for (; fen.charAt(i) != ' '; i++) {
+				castlingRights |= castlingFlag(fen.charAt(i));
+			}
+			i++;
+			enPassantSquare = NO_SQUARE;
+			if (fen.charAt(i) != '-') {
+				char epFile = fen.charAt(i);
+				char epRank = fen.charAt(i + 1);
+				if (epFile < 'a' || epFile > 'h' || epRank != ((sideToMove == WHITE) ? '6' : '3')) {
+					throw new ChessException("Invalid FEN: " + fen);
+				}
+				enPassantSquare = (epRank - '1') * 8 + (epFile - 'a');
+				i++;
+			}
+			i += 2;
+			halfmoveClock = 0;
+			fullmoveNumber = 1;
+			if (i < fen.length()) {
+				halfmoveClock = parseNumber(fen, i);
+				i = fen.indexOf(' ', i);
+				if (i >= 0) {
+					fullmoveNumber = parseNumber(fen, i + 1);
+				}
+			}
+		} catch (ChessException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new ChessException("Invalid FEN: " + fen);
+		}
+		if (Long.bitCount(pieces[WHITE * 6 + KING]) != 1 || Long.bitCount(pieces[BLACK * 6 + KING]) != 1) {
+			throw new ChessException("Invalid FEN, each side needs exactly one king: " + fen);
+		}
+		if (isSquareAttacked(kingSquares[sideToMove ^ 1], sideToMove)) {
+			throw new ChessException("Invalid FEN, the side not to move is in check: " + fen);
+		}
+		castlingRights &= validCastlingRights();
+		// an en passant square is only kept behind a pawn that could have just
+		// made the double push
+		if (enPassantSquare != NO_SQUARE) {
+			int pawnSquare = (sideToMove == WHITE) ? enPassantSquare - 8 : enPassantSquare + 8;
+			if (squares[pawnSquare] != (sideToMove ^ 1) * 6 + PAWN || squares[enPassantSquare] != NO_PIECE
+					|| squares[(sideToMove == WHITE) ? enPassantSquare + 8 : enPassantSquare - 8] != NO_PIECE) {
+				enPassantSquare = NO_SQUARE;
+			}
+		}
+		hash = computeHash();
+	}
+
+	// a right is only kept while its king and rook are still on their home squares
+	private int validCastlingRights() {
+		int rights = 0;
+		if (squares[4] == WHITE * 6 + KING) {
+			if (squares[7] == WHITE * 6 + ROOK) {
+				rights |= WHITE_KINGSIDE;
+			}
+			if (squares[0] == WHITE * 6 + ROOK) {
+				rights |= WHITE_QUEENSIDE;
+			}
+		}
+		if (squares[60] == BLACK * 6 + KING) {
+			if (squares[63] == BLACK * 6 + ROOK) {
+				rights |= BLACK_KINGSIDE;
+			}
+			if (squares[56] == BLACK * 6 + ROOK) {
+				rights |= BLACK_QUEENSIDE;
+			}
+		}
+		return rights;
+	}
+
+	// the counters are read in place rather than through substring and parseInt so
+	// that loading a position allocates nothing
+	private static int parseNumber(String fen, int start) {
+		int value = 0;
+		for (int i = start; i < fen.length() && fen.charAt(i) > ' '; i++) {
+			char c = fen.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new ChessException("Invalid FEN: " + fen);
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	public String toFen() {
+		return appendFen(new StringBuilder(90)).toString();
+	}
+
+	public StringBuilder appendFen(StringBuilder sb) {
+		for (int rank = 7; rank >= 0; rank--) {
+			int empty = 0;
+			for (int file = 0; file < 8; file++) {
+				int piece = squares[rank * 8 + file];
+				if (piece == NO_PIECE) {
+					empty++;
+				} else {
+					if (empty > 0) {
+						sb.append((char) ('0' + empty));
+						empty = 0;
+					}
+					sb.append(PIECE_CHARS.charAt(piece));
+				}
+			}
+			if (empty > 0) {
+				sb.append((char) ('0' + empty));
+			}
+			if (rank > 0) {
+				sb.append('/');
+			}
+		}
+		sb.append(sideToMove == WHITE ? " w " : " b ");
+		if (castlingRights == 0) {
+			sb.append('-');
+		}
+		for (int i = 0; i < CASTLING_CHARS.length(); i++) {
+			if ((castlingRights & (1 << i)) != 0) {
+				sb.append(CASTLING_CHARS.charAt(i));
+			}
+		}
+		sb.append(' ');
+		if (enPassantSquare == NO_SQUARE) {
+			sb.append('-');
+		} else {
+			sb.append((char) ('a' + (enPassantSquare & 7))).append((char) ('1' + (enPassantSquare >>> 3)));
+		}
+		return sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+	}
+
+	private static int castlingFlag(char c) {
+		switch (c) {
+		case 'K':
+			return WHITE_KINGSIDE;
+		case 'Q':
+			return WHITE_QUEENSIDE;
+		case 'k':
+			return BLACK_KINGSIDE;
+		case 'q':
+			return BLACK_QUEENSIDE;
+		default:
+			return 0;
+		}
+	}
+
+	public long getPieces(int color, int type) {
+		return pieces[color * 6 + type];
+	}
+
+	public long getOccupancy(int color) {
+		return occupancy[color];
+	}
+
+	public long getOccupied() {
+		return occupied;
+	}
+
+	public int getSideToMove() {
+		return sideToMove;
+	}
+
+	public void setSideToMove(int sideToMove) {
+		if (sideToMove != this.sideToMove) {
+			hash ^= Zobrist.SIDE;
+			this.sideToMove = sideToMove;
+		}
+	}
+
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
+	public void setCastlingRights(int castlingRights) {
+		hash ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+		this.castlingRights = castlingRights;
+	}
+
+	public int getEnPassantSquare() {
+		return enPassantSquare;
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public int getMiddlegameScore() {
+		return middlegame;
+	}
+
+	public int getEndgameScore() {
+		return endgame;
+	}
+
+	public int getPhase() {
+		return phase;
+	}
+
+	public int getPly() {
+		return ply;
+	}
+
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	public long computeHash() {
+		long h = 0L;
+		for (int square = 0; square < 64; square++) {
+			if (squares[square] != NO_PIECE) {
+				h ^= Zobrist.PIECES[squares[square] * 64 + square];
+			}
+		}
+		h ^= Zobrist.CASTLING[castlingRights];
+		if (enPassantSquare != NO_SQUARE) {
+			h ^= Zobrist.EN_PASSANT[enPassantSquare & 7];
+		}
+		if (sideToMove == BLACK) {
+			h ^= Zobrist.SIDE;
+		}
+		return h;
+	}
+
+	public int getKingSquare(int color) {
+		return kingSquares[color];
+	}
+
+	public int getPieceCount() {
+		return Long.bitCount(occupied);
+	}
+
+	public int getPieceCount(int color, int type) {
+		return Long.bitCount(pieces[color * 6 + type]);
+	}
+
+	public int pieceAt(int square) {
+		return squares[square];
+	}
+
+	public boolean isEmpty(int square) {
+		return (occupied & (1L << square)) == 0;
+	}
+
+	public void placePiece(int color, int type, int square) {
+		if ((occupied & (1L << square)) != 0) {
+			throw new ChessException("There is already a piece on square " + Move.squareName(square));
+		}
+		put(color * 6 + type, square);
+	}
+
+	public int removePiece(int square) {
+		int piece = squares[square];
+		if (piece != NO_PIECE) {
+			clear(piece, square);
+		}
+		return piece;
+	}
+
+	private void put(int piece, int square) {
+		long bit = 1L << square;
+		pieces[piece] |= bit;
+		occupancy[colorOf(piece)] |= bit;
+		occupied |= bit;
+		squares[square] = piece;
+		hash ^= Zobrist.PIECES[piece * 64 + square];
+		middlegame += PieceSquareTables.middlegame(piece, square);
+		endgame += PieceSquareTables.endgame(piece, square);
+		phase += PieceSquareTables.PHASE[typeOf(piece)];
+		attacksValid = false;
+		if (typeOf(piece) == KING) {
+			kingSquares[colorOf(piece)] = square;
+		}
+	}
+
+	private void clear(int piece, int square) {
+		long bit = ~(1L << square);
+		pieces[piece] &= bit;
+		occupancy[colorOf(piece)] &= bit;
+		occupied &= bit;
+		squares[square] = NO_PIECE;
+		hash ^= Zobrist.PIECES[piece * 64 + square];
+		middlegame -= PieceSquareTables.middlegame(piece, square);
+		endgame -= PieceSquareTables.endgame(piece, square);
+		phase -= PieceSquareTables.PHASE[typeOf(piece)];
+		attacksValid = false;
+		if (typeOf(piece) == KING) {
+			kingSquares[colorOf(piece)] = NO_SQUARE;
+		}
+	}
+
+	public void makeMove(int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		int piece = squares[from];
+		int us = sideToMove;
+
+		int record = ply * HISTORY_STRIDE;
+		if (record == history.length) {
+			history = Arrays.copyOf(history, history.length * 2);
+		}
+		history[record + 1] = hash;
+		history[record + 2] = attacks[WHITE];
+		history[record + 3] = attacks[BLACK];
+		hash ^= stateKey();
+
+		// packed before anything is cleared, while the attack maps still say
+		// whether they are valid
+		int capturedSquare = ((flags & Move.EN_PASSANT) != 0) ? ((us == WHITE) ? to - 8 : to + 8) : to;
+		int captured = ((flags & (Move.CAPTURE | Move.EN_PASSANT)) != 0) ? squares[capturedSquare] : NO_PIECE;
+		history[record] = pack(captured);
+		if (captured != NO_PIECE) {
+			clear(captured, capturedSquare);
+		}
+
+		clear(piece, from);
+		put(Move.isPromotion(move) ? us * 6 + Move.promotion(move) : piece, to);
+
+		// #specialmove castling
+		if ((flags & Move.CASTLING) != 0) {
+			int rookFrom = (to > from) ? to + 1 : to - 2;
+			int rookTo = (to > from) ? to - 1 : to + 1;
+			int rook = squares[rookFrom];
+			clear(rook, rookFrom);
+			put(rook, rookTo);
+		}
+
+		castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+		enPassantSquare = ((flags & Move.DOUBLE_PUSH) != 0) ? (from + to) >>> 1 : NO_SQUARE;
+		halfmoveClock = (typeOf(piece) == PAWN || captured != NO_PIECE) ? 0 : halfmoveClock + 1;
+		if (us == BLACK) {
+			fullmoveNumber++;
+		}
+		sideToMove = us ^ 1;
+		hash ^= stateKey() ^ Zobrist.SIDE;
+		ply++;
+	}
+
+	public void undoMove(int move) {
+		ply--;
+		int record = ply * HISTORY_STRIDE;
+		long state = history[record];
+		int us = sideToMove ^ 1;
+		sideToMove = us;
+		if (us == BLACK) {
+			fullmoveNumber--;
+		}
+		castlingRights = (int) (state >>> 4) & 0xF;
+		enPassantSquare = (int) ((state >>> 8) & 0x7F) - 1;
+		halfmoveClock = (int) (state >>> 16);
+
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		int piece = squares[to];
+
+		// #specialmove castling
+		if ((flags & Move.CASTLING) != 0) {
+			int rookFrom = (to > from) ? to + 1 : to - 2;
+			int rookTo = (to > from) ? to - 1 : to + 1;
+			int rook = squares[rookTo];
+			clear(rook, rookTo);
+			put(rook, rookFrom);
+		}
+
+		clear(piece, to);
+		put(Move.isPromotion(move) ? us * 6 + PAWN : piece, from);
+
+		int captured = (int) (state & 0xF) - 1;
+		if (captured != NO_PIECE) {
+			if ((flags & Move.EN_PASSANT) != 0) {
+				put(captured, (us == WHITE) ? to - 8 : to + 8);
+			} else {
+				put(captured, to);
+			}
+		}
+
+		hash = history[record + 1];
+		attacks[WHITE] = history[record + 2];
+		attacks[BLACK] = history[record + 3];
+		attacksValid = (state & (1L << 15)) != 0;
+	}
+
+	// captured piece + 1 in bits 0-3, castling rights in 4-7, en passant square + 1
+	// in 8-14, the attack maps' validity in bit 15 and the halfmove clock from bit 16
+	private long pack(int captured) {
+		return (captured + 1) | (castlingRights << 4) | ((enPassantSquare + 1) << 8) | (attacksValid ? 1L << 15 : 0L)
+				| ((long) halfmoveClock << 16);
+	}
+
+	// passes the turn without moving, for null-move pruning; the attack maps stay
+	// valid since no piece has moved, and the halfmove clock restarts so that no
+	// repetition is matched across the pass
+	public void makeNullMove() {
+		int record = ply * HISTORY_STRIDE;
+		if (record == history.length) {
+			history = Arrays.copyOf(history, history.length * 2);
+		}
+		history[record] = pack(NO_PIECE);
+		history[record + 1] = hash;
+		history[record + 2] = attacks[WHITE];
+		history[record + 3] = attacks[BLACK];
+		hash ^= stateKey();
+		enPassantSquare = NO_SQUARE;
+		halfmoveClock = 0;
+		sideToMove ^= 1;
+		hash ^= stateKey() ^ Zobrist.SIDE;
+		ply++;
+	}
+
+	public void undoNullMove() {
+		ply--;
+		int record = ply * HISTORY_STRIDE;
+		long state = history[record];
+		sideToMove ^= 1;
+		enPassantSquare = (int) ((state >>> 8) & 0x7F) - 1;
+		halfmoveClock = (int) (state >>> 16);
+		hash = history[record + 1];
+	}
+
+	// whether the position already occurred since the last capture or pawn move;
+	// the same side is to move every other ply, and one move each way can never
+	// bring a position back, so the search starts four plies back
+	public boolean isRepetition() {
+		int oldest = Math.max(0, ply - halfmoveClock);
+		for (int p = ply - 4; p >= oldest; p -= 2) {
+			if (history[p * HISTORY_STRIDE + 1] == hash) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long stateKey() {
+		long key = Zobrist.CASTLING[castlingRights];
+		if (enPassantSquare != NO_SQUARE) {
+			key ^= Zobrist.EN_PASSANT[enPassantSquare & 7];
+		}
+		return key;
+	}
+
+	public boolean isSquareAttacked(int square, int byColor) {
+		return attackersTo(square, byColor, occupied) != 0;
+	}
+
+	public long attackersTo(int square, int byColor, long occupied) {
+		int base = byColor * 6;
+		return (Attacks.pawn(byColor ^ 1, square) & pieces[base + PAWN])
+				| (Attacks.knight(square) & pieces[base + KNIGHT])
+				| (Attacks.king(square) & pieces[base + KING])
+				| (Attacks.bishop(square, occupied) & (pieces[base + BISHOP] | pieces[base + QUEEN]))
+				| (Attacks.rook(square, occupied) & (pieces[base + ROOK] | pieces[base + QUEEN]));
+	}
+
+	public long getAttacks(int color) {
+		if (!attacksValid) {
+			attacks[WHITE] = computeAttacks(WHITE);
+			attacks[BLACK] = computeAttacks(BLACK);
+			attacksValid = true;
+		}
+		return attacks[color];
+	}
+
+	// sliders see through the opposing king, so the map also covers the squares
+	// that king would still be attacked on after stepping away along the ray
+	private long computeAttacks(int color) {
+		int base = color * 6;
+		long occ = occupied & ~pieces[(color ^ 1) * 6 + KING];
+		long result = Attacks.pawns(color, pieces[base + PAWN]);
+		long bb = pieces[base + KNIGHT];
+		while (bb != 0) {
+			result |= Attacks.knight(Long.numberOfTrailingZeros(bb));
+			bb &= bb - 1;
+		}
+		bb = pieces[base + BISHOP] | pieces[base + QUEEN];
+		while (bb != 0) {
+			result |= Attacks.bishop(Long.numberOfTrailingZeros(bb), occ);
+			bb &= bb - 1;
+		}
+		bb = pieces[base + ROOK] | pieces[base + QUEEN];
+		while (bb != 0) {
+			result |= Attacks.rook(Long.numberOfTrailingZeros(bb), occ);
+			bb &= bb - 1;
+		}
+		if (kingSquares[color] != NO_SQUARE) {
+			result |= Attacks.king(kingSquares[color]);
+		}
+		return result;
+	}
+
+	public boolean isInCheck(int color) {
+		return (getAttacks(color ^ 1) & pieces[color * 6 + KING]) != 0;
+	}
+
+	public boolean isInCheck() {
+		return isInCheck(sideToMove);
+	}
+
+	public long pinnedPieces(int color) {
+		int them = color ^ 1;
+		int king = kingSquares[color];
+		long snipers = (Attacks.rook(king, 0L) & (pieces[them * 6 + ROOK] | pieces[them * 6 + QUEEN]))
+				| (Attacks.bishop(king, 0L) & (pieces[them * 6 + BISHOP] | pieces[them * 6 + QUEEN]));
+		long pinned = 0L;
+		while (snipers != 0) {
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			snipers &= snipers - 1;
+			long between = Attacks.between(king, sniper) & occupied;
+			if (between != 0 && (between & (between - 1)) == 0 && (between & occupancy[color]) != 0) {
+				pinned |= between;
+			}
+		}
+		return pinned;
+	}
+
+	// emits only legal moves: king moves avoid the attack map, a single check
+	// restricts the other pieces to capturing or blocking the checker, a double
+	// check leaves king moves only, and pinned pieces stay on the pin line
+	public int generateLegalMoves(int[] moves) {
+		return generateLegalMoves(moves, false);
+	}
+
+	// captures, en passant included, and promotions only
+	public int generateLegalCaptures(int[] moves) {
+		return generateLegalMoves(moves, true);
+	}
+
+	private int generateLegalMoves(int[] moves, boolean capturesOnly) {
+		int us = sideToMove;
+		int them = us ^ 1;
+		long own = occupancy[us];
+		long enemy = occupancy[them];
+		long targetMask = capturesOnly ? enemy : ~0L;
+		int king = kingSquares[us];
+		int count = 0;
+
+		count = addMoves(moves, count, king, Attacks.king(king) & ~own & ~getAttacks(them) & targetMask, enemy);
+
+		long checkers = attackersTo(king, them, occupied);
+		if ((checkers & (checkers - 1)) != 0) {
+			return count;
+		}
+		long checkMask = (checkers == 0) ? ~0L
+				: checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+		long pinned = pinnedPieces(us);
+
+		long pawns = pieces[us * 6 + PAWN];
+		while (pawns != 0) {
+			int from = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			long allowed = ((pinned & (1L << from)) != 0) ? checkMask & Attacks.line(king, from) : checkMask;
+			count = addPawnMoves(moves, count, from, us, enemy, allowed, !capturesOnly);
+		}
+		for (int type = KNIGHT; type <= QUEEN; type++) {
+			long bb = pieces[us * 6 + type];
+			while (bb != 0) {
+				int from = Long.numberOfTrailingZeros(bb);
+				bb &= bb - 1;
+				long targets = attacks(type, from) & ~own & checkMask & targetMask;
+				if ((pinned & (1L << from)) != 0) {
+					targets &= Attacks.line(king, from);
+				}
+				count = addMoves(moves, count, from, targets, enemy);
+			}
+		}
+		count = addEnPassantMoves(moves, count, us, king, checkers);
+		if (checkers == 0 && !capturesOnly) {
+			count = addCastlingMoves(moves, count, us);
+		}
+		return count;
+	}
+
+	public int generateMoves(int[] moves) {
+		int us = sideToMove;
+		long enemy = occupancy[us ^ 1];
+		long targets = ~occupancy[us];
+		int count = 0;
+
+		long pawns = pieces[us * 6 + PAWN];
+		while (pawns != 0) {
+			int from = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			count = addPawnMoves(moves, count, from, us, enemy, ~0L, true);
+		}
+		for (int type = KNIGHT; type <= KING; type++) {
+			long bb = pieces[us * 6 + type];
+			while (bb != 0) {
+				int from = Long.numberOfTrailingZeros(bb);
+				bb &= bb - 1;
+				count = addMoves(moves, count, from, attacks(type, from) & targets, enemy);
+			}
+		}
+		count = addEnPassantMoves(moves, count, us, NO_SQUARE, 0L);
+		return addCastlingMoves(moves, count, us);
+	}
+
+	private long attacks(int type, int square) {
+		switch (type) {
+		case KNIGHT:
+			return Attacks.knight(square);
+		case BISHOP:
+			return Attacks.bishop(square, occupied);
+		case ROOK:
+			return Attacks.rook(square, occupied);
+		case QUEEN:
+			return Attacks.queen(square, occupied);
+		default:
+			return Attacks.king(square);
+		}
+	}
+
+	private int addMoves(int[] moves, int count, int from, long targets, long enemy) {
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			int flags = ((enemy & (1L << to)) != 0) ? Move.CAPTURE : 0;
+			moves[count++] = Move.encode(from, to, flags, 0);
+		}
+		return count;
+	}
+
+	// without quiets only the pushes that promote are added besides the captures
+	private int addPawnMoves(int[] moves, int count, int from, int us, long enemy, long allowed, boolean quiets) {
+		int forward = (us == WHITE) ? 8 : -8;
+		int rank = from >>> 3;
+		boolean promotes = (us == WHITE) ? rank == 6 : rank == 1;
+		int to = from + forward;
+		if (isEmpty(to)) {
+			if ((allowed & (1L << to)) != 0 && (quiets || promotes)) {
+				count = addPawnMove(moves, count, from, to, 0, promotes);
+			}
+			boolean startRank = (us == WHITE) ? rank == 1 : rank == 6;
+			if (quiets && startRank && isEmpty(to + forward) && (allowed & (1L << (to + forward))) != 0) {
+				moves[count++] = Move.encode(from, to + forward, Move.DOUBLE_PUSH, 0);
+			}
+		}
+		long captures = Attacks.pawn(us, from) & enemy & allowed;
+		while (captures != 0) {
+			int target = Long.numberOfTrailingZeros(captures);
+			captures &= captures - 1;
+			count = addPawnMove(moves, count, from, target, Move.CAPTURE, promotes);
+		}
+		return count;
+	}
+
+	private int addPawnMove(int[] moves, int count, int from, int to, int flags, boolean promotes) {
+		// #specialmove promotion
+		if (promotes) {
+			moves[count++] = Move.encode(from, to, flags, QUEEN);
+			moves[count++] = Move.encode(from, to, flags, ROOK);
+			moves[count++] = Move.encode(from, to, flags, BISHOP);
+			moves[count++] = Move.encode(from, to, flags, KNIGHT);
+		} else {
+			moves[count++] = Move.encode(from, to, flags, 0);
+		}
+		return count;
+	}
+
+	// #specialmove en passant
+	// with a king square the capture is checked for legality by replaying the
+	// occupancy change, which also covers the rank pin through both pawns
+	private int addEnPassantMoves(int[] moves, int count, int us, int king, long checkers) {
+		if (enPassantSquare == NO_SQUARE) {
+			return count;
+		}
+		int them = us ^ 1;
+		int captured = (us == WHITE) ? enPassantSquare - 8 : enPassantSquare + 8;
+		long pawns = Attacks.pawn(them, enPassantSquare) & pieces[us * 6 + PAWN];
+		while (pawns != 0) {
+			int from = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			if (king != NO_SQUARE) {
+				long leapers = pieces[them * 6 + PAWN] | pieces[them * 6 + KNIGHT];
+				if ((checkers & leapers & ~(1L << captured)) != 0) {
+					continue;
+				}
+				long occ = (occupied ^ (1L << from) ^ (1L << captured)) | (1L << enPassantSquare);
+				if ((Attacks.rook(king, occ) & (pieces[them * 6 + ROOK] | pieces[them * 6 + QUEEN])) != 0
+						|| (Attacks.bishop(king, occ) & (pieces[them * 6 + BISHOP] | pieces[them * 6 + QUEEN])) != 0) {
+					continue;
+				}
+			}
+			moves[count++] = Move.encode(from, enPassantSquare, Move.CAPTURE | Move.EN_PASSANT, 0);
+		}
+		return count;
+	}
+
+	private int addCastlingMoves(int[] moves, int count, int us) {
+		int them = us ^ 1;
+		int kingSide = (us == WHITE) ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+		int queenSide = (us == WHITE) ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+		if ((castlingRights & (kingSide | queenSide)) == 0) {
+			return count;
+		}
+		int king = (us == WHITE) ? 4 : 60;
+		long attacked = getAttacks(them);
+		if ((attacked & (1L << king)) != 0) {
+			return count;
+		}
+		// #specialmove castling kingside rook
+		if ((castlingRights & kingSide) != 0 && (occupied & (0x60L << (king - 4))) == 0
+				&& (attacked & (0x60L << (king - 4))) == 0) {
+			moves[count++] = Move.encode(king, king + 2, Move.CASTLING, 0);
+		}
+		// #specialmove castling queenside rook
+		if ((castlingRights & queenSide) != 0 && (occupied & (0x0EL << (king - 4))) == 0
+				&& (attacked & (0x0CL << (king - 4))) == 0) {
+			moves[count++] = Move.encode(king, king - 2, Move.CASTLING, 0);
+		}
+		return count;
+	}
+
+	public static int colorOf(int piece) {
+		return piece / 6;
+	}
+
+	public static int typeOf(int piece) {
+		return piece % 6;
+	}
+
+	public static int square(Position position) {
+		return (7 - position.getRow()) * 8 + position.getColumn();
+	}
+
+	public static Position position(int square) {
+		return new Position(7 - (square >>> 3), square & 7);
+	}
+
+	public static int colorIndex(Color color) {
+		return (color == Color.WHITE) ? WHITE : BLACK;
+	}
+
+	public static int typeOf(ChessPiece piece) {
+		if (piece instanceof Pawn)
+			return PAWN;
+		if (piece instanceof Knight)
+			return KNIGHT;
+		if (piece instanceof Bishop)
+			return BISHOP;
+		if (piece instanceof Queen)
+			return QUEEN;
+		if (piece instanceof King)
+			return KING;
+		return ROOK;
+	}
+}
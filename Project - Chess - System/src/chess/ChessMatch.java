@@ -2,7 +2,6 @@ package chess;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import boardgame.Board;
 import boardgame.Piece;
@@ -16,24 +15,48 @@ import chess.pieces.Rook;
 
 public class ChessMatch {
 
+	private static final String[] PROMOTION_TYPES = { "", "N", "B", "R", "Q" };
+
 	private int turn;
 	private Color currentPlayer;
 	private Board board;
+	private BitBoard bitBoard;
 	private boolean check;
 	private boolean checkMate;
+	private boolean staleMate;
 	private ChessPiece enPassantVulnerable;
 	private ChessPiece promoted;
+	private int[] moveBuffer = new int[BitBoard.MAX_MOVES];
+	// the legal moves of the side to move, generated once per position and shared
+	// by the mate tests, the move validation and legalMoves; -1 when stale
+	private int[] legal = new int[BitBoard.MAX_MOVES];
+	private int legalCount = -1;
 
-	private List<Piece> piecesOnTheBoard = new ArrayList<>();
 	private List<Piece> capturedPieces = new ArrayList<>();
+	private List<UndoRecord> undoStack = new ArrayList<>();
+
+	// kept across loadFen calls, so reloading a position allocates no board objects
+	private Position[] positions = new Position[64];
+	private ChessPiece[][] sparePieces = new ChessPiece[12][10];
+	private int[] spareCounts = new int[12];
+	// a FEN is parsed here first and swapped in, so a rejected one leaves the
+	// match as it was
+	private BitBoard fenBoard = new BitBoard();
 
 	public ChessMatch() {
 		board = new Board(8, 8);
+		bitBoard = new BitBoard();
 		turn = 1;
 		currentPlayer = Color.WHITE;
 		inicialSetup();
 	}
 
+	public ChessMatch(String fen) {
+		board = new Board(8, 8);
+		bitBoard = new BitBoard();
+		loadFen(fen);
+	}
+
 	public int getTurn() {
 		return turn;
 	}
@@ -50,6 +73,10 @@ public class ChessMatch {
 		return checkMate;
 	}
 
+	public boolean getStaleMate() {
+		return staleMate;
+	}
+
 	public ChessPiece getEnPassantVulnerable() {
 		return enPassantVulnerable;
 	}
@@ -58,6 +85,113 @@ public class ChessMatch {
 		return promoted;
 	}
 
+	public long getHash() {
+		return bitBoard.getHash();
+	}
+
+	public ChessPosition getKingPosition(Color color) {
+		int square = bitBoard.getKingSquare(BitBoard.colorIndex(color));
+		if (square == BitBoard.NO_SQUARE) {
+			throw new IllegalStateException("There is no " + color + " king on the board");
+		}
+		return ChessPosition.fromPosition(BitBoard.position(square));
+	}
+
+	public int getPieceCount(Color color) {
+		return Long.bitCount(bitBoard.getOccupancy(BitBoard.colorIndex(color)));
+	}
+
+	public String toFen() {
+		return bitBoard.toFen();
+	}
+
+	public StringBuilder appendFen(StringBuilder sb) {
+		return bitBoard.appendFen(sb);
+	}
+
+	// the bitboard is reloaded in place and the object board is rebuilt from it,
+	// so the match can be reused for any number of positions
+	public void loadFen(String fen) {
+		fenBoard.loadFen(fen);
+		BitBoard previous = bitBoard;
+		bitBoard = fenBoard;
+		fenBoard = previous;
+		legalCount = -1;
+		capturedPieces.clear();
+		undoStack.clear();
+		for (int square = 0; square < 64; square++) {
+			if (positions[square] == null) {
+				positions[square] = BitBoard.position(square);
+			}
+			Piece old = board.removePiece(positions[square]);
+			if (old != null) {
+				recycle((ChessPiece) old);
+			}
+		}
+		for (int square = 0; square < 64; square++) {
+			int piece = bitBoard.pieceAt(square);
+			if (piece != BitBoard.NO_PIECE) {
+				board.placePiece(obtainPiece(piece), positions[square]);
+			}
+		}
+
+		int us = bitBoard.getSideToMove();
+		currentPlayer = color(us);
+		turn = (bitBoard.getFullmoveNumber() - 1) * 2 + 1 + us;
+		promoted = null;
+		enPassantVulnerable = null;
+		int enPassant = bitBoard.getEnPassantSquare();
+		if (enPassant != BitBoard.NO_SQUARE) {
+			enPassantVulnerable = (ChessPiece) board.piece(positions[(us == BitBoard.WHITE) ? enPassant - 8
+					: enPassant + 8]);
+		}
+		updateStatus(currentPlayer);
+		// as after performChessMove, a mated position keeps the turn and player of
+		// the side that gave mate
+		if (checkMate) {
+			currentPlayer = opponent(currentPlayer);
+			turn--;
+		}
+	}
+
+	private void recycle(ChessPiece piece) {
+		int code = BitBoard.colorIndex(piece.getColor()) * 6 + BitBoard.typeOf(piece);
+		if (spareCounts[code] < sparePieces[code].length) {
+			sparePieces[code][spareCounts[code]++] = piece;
+		}
+	}
+
+	private ChessPiece obtainPiece(int piece) {
+		if (spareCounts[piece] == 0) {
+			return newPiece(BitBoard.typeOf(piece), color(BitBoard.colorOf(piece)));
+		}
+		ChessPiece chessPiece = sparePieces[piece][--spareCounts[piece]];
+		sparePieces[piece][spareCounts[piece]] = null;
+		chessPiece.resetMoveCount();
+		return chessPiece;
+	}
+
+	public int pieceAt(int square) {
+		return bitBoard.pieceAt(square);
+	}
+
+	// whether the object board holds the same pieces as the bitboard, for perft
+	boolean mirrorsBitBoard() {
+		for (int square = 0; square < 64; square++) {
+			ChessPiece piece = (ChessPiece) board.piece(BitBoard.position(square));
+			int expected = (piece == null) ? BitBoard.NO_PIECE
+					: BitBoard.colorIndex(piece.getColor()) * 6 + BitBoard.typeOf(piece);
+			if (bitBoard.pieceAt(square) != expected) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public BitBoard getPosition() {
+		return new BitBoard(bitBoard);
+	}
+
 	public ChessPiece[][] getPieces() {
 		ChessPiece[][] mat = new ChessPiece[board.getRows()][board.getColumns()];
 		for (int i = 0; i < board.getRows(); i++) {
@@ -69,42 +203,97 @@ public class ChessMatch {
 	}
 
 	private void validateSourcePosition(Position position) {
-		if (!board.thereIsAPiece(position)) {
+		if (bitBoard.isEmpty(BitBoard.square(position))) {
 			throw new ChessException("There is no piece on source position");
 		}
 		if (currentPlayer != ((ChessPiece) board.piece(position)).getColor()) {
 			throw new ChessException("The chosen piece is not yours");
 		}
-		if (!board.piece(position).isThereAnyPossibleMove()) {
-			throw new ChessException("There is no possible move for the chosen piece");
+		int from = BitBoard.square(position);
+		int count = legalMoves();
+		for (int i = 0; i < count; i++) {
+			if (Move.from(legal[i]) == from) {
+				return;
+			}
 		}
+		throw new ChessException("There is no possible move for the chosen piece");
 	}
 
 	public boolean[][] possibleMoves(ChessPosition sourcePosition) {
 		Position position = sourcePosition.toPosition();
 		validateSourcePosition(position);
-		return board.piece(position).possibleMoves();
+		boolean[][] mat = new boolean[board.getRows()][board.getColumns()];
+		int from = BitBoard.square(position);
+		int count = legalMoves();
+		for (int i = 0; i < count; i++) {
+			if (Move.from(legal[i]) == from) {
+				Position target = BitBoard.position(Move.to(legal[i]));
+				mat[target.getRow()][target.getColumn()] = true;
+			}
+		}
+		return mat;
+	}
+
+	public int legalMoves(int[] moves) {
+		int count = legalMoves();
+		System.arraycopy(legal, 0, moves, 0, count);
+		return count;
+	}
+
+	private int legalMoves() {
+		if (legalCount < 0) {
+			legalCount = bitBoard.generateLegalMoves(legal);
+		}
+		return legalCount;
 	}
 
-	private void validateTargetPosition(Position source, Position target) {
-		if (!board.piece(source).possibleMove(target)) {
+	// the pseudo-legal moves are only generated to tell the two errors apart
+	private int validateTargetPosition(Position source, Position target) {
+		int from = BitBoard.square(source);
+		int to = BitBoard.square(target);
+		int move = findMove(legal, legalMoves(), from, to);
+		if (move != Move.NONE) {
+			return move;
+		}
+		if (findMove(moveBuffer, bitBoard.generateMoves(moveBuffer), from, to) == Move.NONE) {
 			throw new ChessException("The chosen piece can't move to target position");
 		}
+		throw new ChessException("You can't put yourself in check");
+	}
+
+	private static int findMove(int[] moves, int count, int from, int to) {
+		for (int i = 0; i < count; i++) {
+			if (Move.from(moves[i]) == from && Move.to(moves[i]) == to) {
+				return moves[i];
+			}
+		}
+		return Move.NONE;
 	}
 
 	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
 		Position source = sourcePosition.toPosition();
 		Position target = targetPosition.toPosition();
 		validateSourcePosition(source);
-		validateTargetPosition(source, target);
-		Piece capturedPiece = makeMove(source, target);
+		return performChessMove(source, target, validateTargetPosition(source, target));
+	}
 
-		if (testCheck(currentPlayer)) {
-			undoMove(source, target, capturedPiece);
-			throw new ChessException("You can't put yourself in check");
+	// plays an encoded move such as one from legalMoves, promoting to the piece it names
+	public ChessPiece performChessMove(int move) {
+		int count = legalMoves();
+		for (int i = 0; i < count; i++) {
+			if (legal[i] == move) {
+				return performChessMove(BitBoard.position(Move.from(move)), BitBoard.position(Move.to(move)), move);
+			}
 		}
+		throw new ChessException("The move " + Move.toString(move) + " is not legal");
+	}
+
+	private ChessPiece performChessMove(Position source, Position target, int move) {
+		Piece capturedPiece = makeMove(source, target, move);
 
 		ChessPiece movedPiece = (ChessPiece) board.piece(target);
+		undoStack.add(new UndoRecord(move, movedPiece, capturedPiece, enPassantVulnerable, promoted, check,
+				checkMate, turn, currentPlayer));
 
 		// #specialmove promotion
 		promoted = null;
@@ -112,15 +301,12 @@ public class ChessMatch {
 			if ((movedPiece.getColor() == Color.WHITE && target.getRow() == 0)
 					|| (movedPiece.getColor() == Color.BLACK && target.getRow() == 7)) {
 				promoted = (ChessPiece) board.piece(target);
-				promoted = replacePromotedPiece("Q");
+				promoted = replacePromotedPiece(PROMOTION_TYPES[Move.promotion(move)]);
 			}
 		}
 
-		check = (testCheck(opponent(currentPlayer))) ? true : false;
-
-		if (testCheckMate(opponent(currentPlayer))) {
-			checkMate = true;
-		} else {
+		updateStatus(opponent(currentPlayer));
+		if (!checkMate) {
 			nextTurn();
 		}
 
@@ -135,6 +321,56 @@ public class ChessMatch {
 		return (ChessPiece) capturedPiece;
 	}
 
+	public boolean canUnmake() {
+		return !undoStack.isEmpty();
+	}
+
+	public void unmake() {
+		if (undoStack.isEmpty()) {
+			throw new IllegalStateException("There is no move to undo");
+		}
+		UndoRecord record = undoStack.remove(undoStack.size() - 1);
+		int move = record.move;
+		Position source = BitBoard.position(Move.from(move));
+		Position target = BitBoard.position(Move.to(move));
+
+		// the piece on the target may be a promoted replacement of the moved pawn
+		board.removePiece(target);
+		record.moved.decreaseMoveCount();
+		board.placePiece(record.moved, source);
+
+		if (record.captured != null) {
+			// #specialmove en passant
+			if ((Move.flags(move) & Move.EN_PASSANT) != 0) {
+				board.placePiece(record.captured, new Position(source.getRow(), target.getColumn()));
+			} else {
+				board.placePiece(record.captured, target);
+			}
+			capturedPieces.remove(capturedPieces.size() - 1);
+		}
+
+		// #specialmove castling
+		if ((Move.flags(move) & Move.CASTLING) != 0) {
+			boolean kingside = target.getColumn() > source.getColumn();
+			Position sourceT = new Position(source.getRow(), kingside ? source.getColumn() + 3 : source.getColumn() - 4);
+			Position targetT = new Position(source.getRow(), kingside ? source.getColumn() + 1 : source.getColumn() - 1);
+			ChessPiece rook = (ChessPiece) board.removePiece(targetT);
+			board.placePiece(rook, sourceT);
+			rook.decreaseMoveCount();
+		}
+
+		bitBoard.undoMove(move);
+		legalCount = -1;
+		enPassantVulnerable = record.enPassantVulnerable;
+		promoted = record.promoted;
+		check = record.check;
+		checkMate = record.checkMate;
+		// the move was played from it, so there was a legal move
+		staleMate = false;
+		turn = record.turn;
+		currentPlayer = record.currentPlayer;
+	}
+
 	public ChessPiece replacePromotedPiece(String type) {
 		if (promoted == null) {
 			throw new IllegalStateException("There is no piece to be promoted");
@@ -144,12 +380,10 @@ public class ChessMatch {
 		}
 
 		Position pos = promoted.getChessPosition().toPosition();
-		Piece p = board.removePiece(pos);
-		piecesOnTheBoard.remove(p);
+		removePiece(pos);
 
 		ChessPiece newPiece = newPiece(type, promoted.getColor());
-		board.placePiece(newPiece, pos);
-		piecesOnTheBoard.add(newPiece);
+		placePiece(newPiece, pos);
 
 		return newPiece;
 	}
@@ -164,13 +398,33 @@ public class ChessMatch {
 		return new Rook(board, color);
 	}
 
-	private Piece makeMove(Position source, Position target) {
+	private ChessPiece newPiece(int type, Color color) {
+		switch (type) {
+		case BitBoard.PAWN:
+			return new Pawn(board, color, this);
+		case BitBoard.KNIGHT:
+			return new Knight(board, color);
+		case BitBoard.BISHOP:
+			return new Bishop(board, color);
+		case BitBoard.ROOK:
+			return new Rook(board, color);
+		case BitBoard.QUEEN:
+			return new Queen(board, color);
+		default:
+			return new King(board, color, this);
+		}
+	}
+
+	private static Color color(int color) {
+		return (color == BitBoard.WHITE) ? Color.WHITE : Color.BLACK;
+	}
+
+	private Piece makeMove(Position source, Position target, int move) {
 		ChessPiece p = (ChessPiece) board.removePiece(source);
 		p.increaseMoveCount();
 		Piece capturedPiece = board.removePiece(target);
 		if (capturedPiece != null) {
 			capturedPieces.add(capturedPiece);
-			piecesOnTheBoard.remove(capturedPiece);
 		}
 		board.placePiece(p, target);
 
@@ -203,55 +457,13 @@ public class ChessMatch {
 				}
 				capturedPiece = board.removePiece(pawnPosition);
 				capturedPieces.add(capturedPiece);
-				piecesOnTheBoard.remove(capturedPiece);
 			}
 		}
 
-		return capturedPiece;
-	}
-
-	private void undoMove(Position source, Position target, Piece capturedPiece) {
-		ChessPiece p = (ChessPiece) board.removePiece(target);
-		p.decreaseMoveCount();
-		board.placePiece(p, source);
+		bitBoard.makeMove(move);
+		legalCount = -1;
 
-		if (capturedPiece != null) {
-			board.placePiece(capturedPiece, target);
-			capturedPieces.remove(capturedPiece);
-			piecesOnTheBoard.add(capturedPiece);
-		}
-
-		// #specialmove castling kingside rook
-		if (p instanceof King && target.getColumn() == source.getColumn() + 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() + 3);
-			Position targetT = new Position(source.getRow(), source.getColumn() + 1);
-			ChessPiece rook = (ChessPiece) board.removePiece(targetT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();
-		}
-
-		// #specialmove castling queenside rook
-		if (p instanceof King && target.getColumn() == source.getColumn() - 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() - 4);
-			Position targetT = new Position(source.getRow(), source.getColumn() - 1);
-			ChessPiece rook = (ChessPiece) board.removePiece(targetT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();
-		}
-
-		// #specialmove en passant
-		if (p instanceof Pawn) {
-			if (source.getColumn() != target.getColumn() && capturedPiece == enPassantVulnerable) {
-				ChessPiece pawn = (ChessPiece) board.removePiece(target);
-				Position pawnPosition;
-				if (p.getColor() == Color.WHITE) {
-					pawnPosition = new Position(3, target.getColumn());
-				} else {
-					pawnPosition = new Position(4, target.getColumn());
-				}
-				board.placePiece(pawn, pawnPosition);
-			}
-		}
+		return capturedPiece;
 	}
 
 	private void nextTurn() {
@@ -263,59 +475,37 @@ public class ChessMatch {
 		return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
 	}
 
-	private ChessPiece king(Color color) {
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-				.collect(Collectors.toList());
-		for (Piece p : list) {
-			if (p instanceof King) {
-				return (ChessPiece) p;
-			}
-		}
-		throw new IllegalStateException("There is no " + color + " king on the board");
+	private boolean testCheck(Color color) {
+		return bitBoard.isInCheck(BitBoard.colorIndex(color));
 	}
 
-	private boolean testCheck(Color color) {
-		Position kingPosition = king(color).getChessPosition().toPosition();
-		List<Piece> opponentPieces = piecesOnTheBoard.stream()
-				.filter(x -> ((ChessPiece) x).getColor() == opponent(color)).collect(Collectors.toList());
-		for (Piece p : opponentPieces) {
-			boolean[][] mat = p.possibleMoves();
-			if (mat[kingPosition.getRow()][kingPosition.getColumn()]) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private boolean testCheckMate(Color color) {
-		if (!testCheck(color)) {
-			return false;
-		}
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-				.collect(Collectors.toList());
-		for (Piece p : list) {
-			boolean mat[][] = p.possibleMoves();
-			for (int i = 0; i < board.getRows(); i++) {
-				for (int j = 0; j < board.getColumns(); j++) {
-					if (mat[i][j]) {
-						Position source = ((ChessPiece) p).getChessPosition().toPosition();
-						Position target = new Position(i, j);
-						Piece capturedPiece = makeMove(source, target);
-						boolean testCheck = testCheck(color);
-						undoMove(source, target, capturedPiece);
-						if (!testCheck) {
-							return false;
-						}
-					}
-				}
-			}
+	// check, checkmate and stalemate of the side to move, from the one generation
+	// of its legal moves that the next move's validation reuses
+	private void updateStatus(Color color) {
+		check = testCheck(color);
+		boolean noMoves = legalMoves() == 0;
+		checkMate = check && noMoves;
+		staleMate = !check && noMoves;
+	}
+
+	private void placePiece(Piece piece, Position position) {
+		board.placePiece(piece, position);
+		legalCount = -1;
+		ChessPiece p = (ChessPiece) piece;
+		bitBoard.placePiece(BitBoard.colorIndex(p.getColor()), BitBoard.typeOf(p), BitBoard.square(position));
+	}
+
+	private Piece removePiece(Position position) {
+		Piece p = board.removePiece(position);
+		if (p != null) {
+			bitBoard.removePiece(BitBoard.square(position));
+			legalCount = -1;
 		}
-		return true;
+		return p;
 	}
 
 	private void placeNewPiece(char column, int row, ChessPiece piece) {
-		board.placePiece(piece, new ChessPosition(row, column).toPosition());
-		piecesOnTheBoard.add(piece);
+		placePiece(piece, new ChessPosition(row, column).toPosition());
 	}
 
 	private void inicialSetup() {
@@ -354,5 +544,34 @@ public class ChessMatch {
 		placeNewPiece('g', 7, new Pawn(board, Color.BLACK, this));
 		placeNewPiece('h', 7, new Pawn(board, Color.BLACK, this));
 
+		bitBoard.setCastlingRights(BitBoard.ALL_CASTLING);
+
+	}
+
+	// what performChessMove changes besides the bitboard, which keeps its own history
+	private static class UndoRecord {
+
+		private final int move;
+		private final ChessPiece moved;
+		private final Piece captured;
+		private final ChessPiece enPassantVulnerable;
+		private final ChessPiece promoted;
+		private final boolean check;
+		private final boolean checkMate;
+		private final int turn;
+		private final Color currentPlayer;
+
+		UndoRecord(int move, ChessPiece moved, Piece captured, ChessPiece enPassantVulnerable, ChessPiece promoted,
+				boolean check, boolean checkMate, int turn, Color currentPlayer) {
+			this.move = move;
+			this.moved = moved;
+			this.captured = captured;
+			this.enPassantVulnerable = enPassantVulnerable;
+			this.promoted = promoted;
+			this.check = check;
+			this.checkMate = checkMate;
+			this.turn = turn;
+			this.currentPlayer = currentPlayer;
+		}
 	}
 }
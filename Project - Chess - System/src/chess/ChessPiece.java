@@ -30,6 +30,10 @@ public abstract class ChessPiece extends Piece {
 		moveCount--;
 	}
 
+	void resetMoveCount() {
+		moveCount = 0;
+	}
+
 	public ChessPosition getChessPosition() {
 		return ChessPosition.fromPosition(position);
 	}
@@ -0,0 +1,58 @@
+package chess;
+
+public final class Move {
+
+	// bits 0-5 source square, 6-11 target square, 12-15 flags, 16-18 promotion piece type
+	public static final int NONE = 0;
+
+	public static final int CAPTURE = 1;
+	public static final int DOUBLE_PUSH = 2;
+	public static final int EN_PASSANT = 4;
+	public static final int CASTLING = 8;
+
+	private Move() {
+	}
+
+	public static int encode(int from, int to, int flags, int promotion) {
+		return from | (to << 6) | (flags << 12) | (promotion << 16);
+	}
+
+	public static int from(int move) {
+		return move & 63;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	public static int flags(int move) {
+		return (move >>> 12) & 15;
+	}
+
+	public static int promotion(int move) {
+		return (move >>> 16) & 7;
+	}
+
+	public static boolean isCapture(int move) {
+		return (move & (CAPTURE << 12)) != 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return promotion(move) != 0;
+	}
+
+	public static String squareName(int square) {
+		return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+	}
+
+	public static String toString(int move) {
+		if (move == NONE) {
+			return "0000";
+		}
+		String s = squareName(from(move)) + squareName(to(move));
+		if (isPromotion(move)) {
+			s += "pnbrqk".charAt(promotion(move));
+		}
+		return s;
+	}
+}
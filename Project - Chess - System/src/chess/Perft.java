@@ -0,0 +1,103 @@
+package chess;
+
+public class Perft {
+
+	public static final int MAX_DEPTH = 16;
+	// the object board is much slower, so ChessMatch is only verified this deep
+	public static final int MATCH_DEPTH = 3;
+
+	// https://www.chessprogramming.org/Perft_Results
+	public static final String[] POSITIONS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+
+	// leaf node counts for depth 1, 2, 3... of each position above
+	public static final long[][] NODES = {
+			{ 20L, 400L, 8902L, 197281L, 4865609L, 119060324L },
+			{ 48L, 2039L, 97862L, 4085603L, 193690690L },
+			{ 14L, 191L, 2812L, 43238L, 674624L, 11030083L },
+			{ 6L, 264L, 9467L, 422333L, 15833292L },
+			{ 44L, 1486L, 62379L, 2103487L, 89941194L },
+			{ 46L, 2079L, 89890L, 3894594L, 164075551L } };
+
+	private BitBoard bitBoard;
+	private ChessMatch chessMatch;
+	private int[][] moves = new int[MAX_DEPTH][BitBoard.MAX_MOVES];
+
+	public Perft(BitBoard bitBoard) {
+		this.bitBoard = bitBoard;
+	}
+
+	// plays every move, leaves included, through performChessMove and unmake,
+	// checking the object board against the bitboard after each of them
+	public Perft(ChessMatch chessMatch) {
+		this.chessMatch = chessMatch;
+	}
+
+	public long perft(int depth) {
+		if (depth < 1 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Perft depth must be between 1 and " + MAX_DEPTH);
+		}
+		return (chessMatch != null) ? countMatch(depth) : count(depth);
+	}
+
+	private long count(int depth) {
+		int[] list = moves[depth - 1];
+		int n = bitBoard.generateLegalMoves(list);
+		if (depth == 1) {
+			return n;
+		}
+		long nodes = 0;
+		for (int i = 0; i < n; i++) {
+			bitBoard.makeMove(list[i]);
+			nodes += count(depth - 1);
+			bitBoard.undoMove(list[i]);
+		}
+		return nodes;
+	}
+
+	private long countMatch(int depth) {
+		int[] list = moves[depth - 1];
+		int n = chessMatch.legalMoves(list);
+		long nodes = 0;
+		for (int i = 0; i < n; i++) {
+			chessMatch.performChessMove(list[i]);
+			checkMirror("playing", list[i]);
+			nodes += (depth > 1) ? countMatch(depth - 1) : 1;
+			chessMatch.unmake();
+			checkMirror("unmaking", list[i]);
+		}
+		return nodes;
+	}
+
+	private void checkMirror(String action, int move) {
+		if (!chessMatch.mirrorsBitBoard()) {
+			throw new IllegalStateException("Object board out of step with the bitboard after " + action + " "
+					+ Move.toString(move) + " in " + chessMatch.toFen());
+		}
+	}
+
+	public static void verify(int maxDepth) {
+		for (int i = 0; i < POSITIONS.length; i++) {
+			Perft perft = new Perft(new BitBoard(POSITIONS[i]));
+			for (int depth = 1; depth <= Math.min(maxDepth, NODES[i].length); depth++) {
+				check(i, depth, perft.perft(depth));
+			}
+			Perft matchPerft = new Perft(new ChessMatch(POSITIONS[i]));
+			for (int depth = 1; depth <= Math.min(Math.min(maxDepth, MATCH_DEPTH), NODES[i].length); depth++) {
+				check(i, depth, matchPerft.perft(depth));
+			}
+		}
+	}
+
+	private static void check(int position, int depth, long nodes) {
+		if (nodes != NODES[position][depth - 1]) {
+			throw new IllegalStateException("Perft mismatch on " + POSITIONS[position] + " at depth " + depth
+					+ ": expected " + NODES[position][depth - 1] + ", found " + nodes);
+		}
+	}
+}
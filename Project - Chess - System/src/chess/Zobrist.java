@@ -0,0 +1,36 @@
+package chess;
+
+public final class Zobrist {
+
+	// indexed by piece * 64 + square, piece as in BitBoard.pieceAt
+	public static final long[] PIECES = new long[12 * 64];
+	public static final long[] CASTLING = new long[16];
+	public static final long[] EN_PASSANT = new long[8];
+	public static final long SIDE;
+
+	private static long seed = 0x9E3779B97F4A7C15L;
+
+	static {
+		for (int i = 0; i < PIECES.length; i++) {
+			PIECES[i] = next();
+		}
+		for (int i = 1; i < CASTLING.length; i++) {
+			CASTLING[i] = next();
+		}
+		for (int i = 0; i < EN_PASSANT.length; i++) {
+			EN_PASSANT[i] = next();
+		}
+		SIDE = next();
+	}
+
+	private Zobrist() {
+	}
+
+	// https://prng.di.unimi.it/splitmix64.c
+	private static long next() {
+		long z = (seed += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,107 @@
+package chess.book;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+import chess.BitBoard;
+import chess.Move;
+
+// Reads books in the Polyglot .bin layout: 16 byte big-endian entries of key,
+// move, weight and learn data, sorted by key. The file is memory-mapped and
+// binary-searched in place. Keys come from Polyglot.polyglotKey, so books made
+// by other Polyglot tools and by OpeningBookWriter read alike.
+public class OpeningBook {
+
+	static final int ENTRY_SIZE = 16;
+
+	private MappedByteBuffer entries;
+	private int size;
+	private int[] legalMoves = new int[BitBoard.MAX_MOVES];
+	private int[] bookMoves = new int[BitBoard.MAX_MOVES];
+	private int[] bookWeights = new int[BitBoard.MAX_MOVES];
+
+	public OpeningBook(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() % ENTRY_SIZE != 0 || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Not an opening book: " + path);
+			}
+			entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			size = (int) (channel.size() / ENTRY_SIZE);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	// fills the legal book moves of the position and their weights, heaviest first
+	// as the book stores them, and returns how many there are
+	public synchronized int moves(BitBoard position, int[] moves, int[] weights) {
+		long key = Polyglot.polyglotKey(position);
+		int count = 0;
+		int legal = position.generateLegalMoves(legalMoves);
+		for (int i = firstEntry(key); i < size && entries.getLong(i * ENTRY_SIZE) == key; i++) {
+			int bookMove = entries.getShort(i * ENTRY_SIZE + 8) & 0xFFFF;
+			for (int j = 0; j < legal; j++) {
+				if (encode(legalMoves[j]) == bookMove) {
+					moves[count] = legalMoves[j];
+					weights[count] = entries.getShort(i * ENTRY_SIZE + 10) & 0xFFFF;
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	// picks a book move with a probability proportional to its weight, or
+	// Move.NONE when the position is not in the book
+	public synchronized int selectMove(BitBoard position) {
+		int count = moves(position, bookMoves, bookWeights);
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			total += bookWeights[i];
+		}
+		if (total == 0) {
+			return Move.NONE;
+		}
+		int pick = ThreadLocalRandom.current().nextInt(total);
+		for (int i = 0; i < count; i++) {
+			pick -= bookWeights[i];
+			if (pick < 0) {
+				return bookMoves[i];
+			}
+		}
+		return Move.NONE;
+	}
+
+	// lower bound, comparing keys as the unsigned numbers they are sorted by
+	private int firstEntry(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(entries.getLong(middle * ENTRY_SIZE), key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// to square in bits 0-5, from square in 6-11 and promotion piece in 12-14;
+	// castling is written as the king capturing its own rook
+	static int encode(int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		if ((Move.flags(move) & Move.CASTLING) != 0) {
+			to = (to > from) ? from + 3 : from - 4;
+		}
+		return to | (from << 6) | (Move.promotion(move) << 12);
+	}
+}
@@ -0,0 +1,61 @@
+package chess.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import chess.BitBoard;
+
+public class OpeningBookWriter {
+
+	private static final int MAX_WEIGHT = 0xFFFF;
+
+	private Map<Long, Map<Integer, Integer>> positions = new TreeMap<>(Long::compareUnsigned);
+
+	// adds weight to a move of the position, summing repeated moves
+	public void add(BitBoard position, int move, int weight) {
+		long key = Polyglot.polyglotKey(position);
+		Map<Integer, Integer> moves = positions.get(key);
+		if (moves == null) {
+			moves = new TreeMap<>();
+			positions.put(key, moves);
+		}
+		moves.merge(OpeningBook.encode(move), weight, Integer::sum);
+	}
+
+	public void write(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.ENTRY_SIZE * 1024);
+			for (Map.Entry<Long, Map<Integer, Integer>> position : positions.entrySet()) {
+				// heaviest move first, as Polyglot tools expect
+				List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(position.getValue().entrySet());
+				moves.sort((a, b) -> b.getValue() - a.getValue());
+				for (Map.Entry<Integer, Integer> move : moves) {
+					if (!buffer.hasRemaining()) {
+						flush(channel, buffer);
+					}
+					buffer.putLong(position.getKey());
+					buffer.putShort((short) (int) move.getKey());
+					buffer.putShort((short) Math.min(move.getValue(), MAX_WEIGHT));
+					buffer.putInt(0);
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
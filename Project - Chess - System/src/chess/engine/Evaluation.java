@@ -0,0 +1,19 @@
+package chess.engine;
+
+import chess.BitBoard;
+import chess.PieceSquareTables;
+
+public final class Evaluation {
+
+	private Evaluation() {
+	}
+
+	// tapered between the middlegame and endgame sums the bitboard keeps up to date,
+	// so a leaf costs a few arithmetic operations
+	public static int evaluate(BitBoard bitBoard) {
+		int phase = Math.min(bitBoard.getPhase(), PieceSquareTables.MAX_PHASE);
+		int score = (bitBoard.getMiddlegameScore() * phase
+				+ bitBoard.getEndgameScore() * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+		return (bitBoard.getSideToMove() == BitBoard.WHITE) ? score : -score;
+	}
+}
@@ -0,0 +1,155 @@
+package chess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.book.OpeningBook;
+import chess.tablebase.TablebaseProber;
+
+public class ParallelSearch {
+
+	private TranspositionTable transpositionTable;
+	private OpeningBook openingBook;
+	private TablebaseProber tablebases;
+	private Consumer<SearchResult> iterationListener;
+	private Search[] workers;
+	private ExecutorService pool;
+
+	public ParallelSearch(TranspositionTable transpositionTable, int threads) {
+		this.transpositionTable = transpositionTable;
+		setThreads(threads);
+	}
+
+	public int getThreads() {
+		return workers.length;
+	}
+
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("There must be at least 1 search thread");
+		}
+		shutdown();
+		workers = new Search[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Search(transpositionTable);
+			workers[i].setTablebases(tablebases);
+		}
+		setIterationListener(iterationListener);
+		if (threads > 1) {
+			pool = Executors.newFixedThreadPool(threads - 1, r -> {
+				Thread t = new Thread(r, "search-helper");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	public TablebaseProber getTablebases() {
+		return tablebases;
+	}
+
+	// the prober and its block cache are shared by all the workers
+	public void setTablebases(TablebaseProber tablebases) {
+		this.tablebases = tablebases;
+		for (Search worker : workers) {
+			worker.setTablebases(tablebases);
+		}
+	}
+
+	public Consumer<SearchResult> getIterationListener() {
+		return iterationListener;
+	}
+
+	// the main worker's iterations are reported, counting the nodes of all the
+	// workers so far
+	public void setIterationListener(Consumer<SearchResult> iterationListener) {
+		this.iterationListener = iterationListener;
+		workers[0].setIterationListener((iterationListener == null) ? null : result -> {
+			long nodes = 0;
+			for (Search worker : workers) {
+				nodes += worker.getNodes();
+			}
+			iterationListener.accept(new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(),
+					nodes, result.getElapsed(), result.getPrincipalVariation()));
+		});
+	}
+
+	public SearchResult search(ChessMatch chessMatch, int maxDepth, long timeLimit) {
+		return search(chessMatch.getPosition(), maxDepth, timeLimit);
+	}
+
+	// Lazy SMP: every helper runs its own iterative deepening on a private copy of
+	// the position and the threads only meet in the shared transposition table
+	public SearchResult search(BitBoard position, int maxDepth, long timeLimit) {
+		SearchResult bookResult = Search.probeBook(openingBook, position);
+		if (bookResult != null) {
+			return bookResult;
+		}
+		transpositionTable.newSearch();
+		// a stop for this search lands on the main worker, so the helpers can
+		// start clean
+		for (int i = 1; i < workers.length; i++) {
+			workers[i].clearStop();
+		}
+
+		List<Future<SearchResult>> helpers = new ArrayList<>();
+		for (int i = 1; i < workers.length; i++) {
+			Search helper = workers[i];
+			BitBoard copy = new BitBoard(position);
+			int startDepth = 1 + (i & 1);
+			helpers.add(pool.submit(() -> helper.iterate(copy, maxDepth, timeLimit, startDepth)));
+		}
+
+		SearchResult result = workers[0].iterate(new BitBoard(position), maxDepth, timeLimit, 1);
+		for (int i = 1; i < workers.length; i++) {
+			workers[i].stop();
+		}
+
+		long nodes = result.getNodes();
+		for (Future<SearchResult> helper : helpers) {
+			try {
+				nodes += helper.get().getNodes();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search helper failed", e.getCause());
+			}
+		}
+		return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(), nodes,
+				result.getElapsed(), result.getPrincipalVariation());
+	}
+
+	public void stop() {
+		for (Search worker : workers) {
+			worker.stop();
+		}
+	}
+
+	public void clearStop() {
+		for (Search worker : workers) {
+			worker.clearStop();
+		}
+	}
+
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package chess.engine;
+
+import chess.BitBoard;
+import chess.Move;
+
+// Searches on a background thread while the opponent thinks, from the position
+// after the reply the last search expected. Whatever is found stays in the
+// transposition table, so the search after the real reply starts warm, and when
+// the guess was right the pondered result can be played straight away.
+public class Ponderer {
+
+	private Search search;
+	private Thread thread;
+	private long hash;
+	private volatile SearchResult result;
+
+	public Ponderer(Search search) {
+		this.search = search;
+	}
+
+	public boolean isPondering() {
+		return thread != null;
+	}
+
+	// starts pondering the position after the expected move; the search must not
+	// be used by anyone else until stop returns
+	public void start(BitBoard position, int expectedMove) {
+		stop();
+		BitBoard copy = new BitBoard(position);
+		if (expectedMove != Move.NONE) {
+			copy.makeMove(expectedMove);
+		}
+		hash = copy.getHash();
+		result = null;
+		thread = new Thread(() -> result = search.search(copy, 0, 0), "ponder");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// cancels pondering and returns what was found if it was the given position,
+	// or null after pondering something else or nothing
+	public SearchResult stop(BitBoard position) {
+		boolean hit = thread != null && position.getHash() == hash;
+		stop();
+		return hit ? result : null;
+	}
+
+	public void stop() {
+		if (thread == null) {
+			return;
+		}
+		search.stop();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		search.clearStop();
+		thread = null;
+	}
+}
@@ -0,0 +1,570 @@
+package chess.engine;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Move;
+import chess.book.OpeningBook;
+import chess.tablebase.Tablebase;
+import chess.tablebase.TablebaseProber;
+
+public class Search {
+
+	public static final int INFINITY = 32000;
+	public static final int MATE = 31000;
+	public static final int MAX_PLY = 128;
+
+	private static final int CHECK_INTERVAL = 2047;
+
+	// move ordering bands: the transposition table move, captures and promotions
+	// by most valuable victim and least valuable attacker, killers, then history
+	private static final int TT_MOVE_SCORE = 1 << 30;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 27;
+	private static final int HISTORY_LIMIT = 1 << 20;
+
+	private static final int NULL_MOVE_MIN_DEPTH = 3;
+	private static final int LMR_MIN_DEPTH = 3;
+	private static final int LMR_MIN_MOVE = 3;
+	private static final int ASPIRATION_MIN_DEPTH = 4;
+	private static final int ASPIRATION_WINDOW = 40;
+
+	private TranspositionTable transpositionTable;
+	private BitBoard bitBoard;
+	private OpeningBook openingBook;
+	private TablebaseProber tablebases;
+	private Consumer<SearchResult> iterationListener;
+
+	private int[][] moves = new int[MAX_PLY][BitBoard.MAX_MOVES];
+	private int[][] moveScores = new int[MAX_PLY][BitBoard.MAX_MOVES];
+	private int[][] killers = new int[MAX_PLY][2];
+	private int[] history = new int[2 * 64 * 64];
+	private StaticExchange staticExchange = new StaticExchange();
+	private int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private int[] pvLength = new int[MAX_PLY + 1];
+
+	private long nodes;
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	private boolean nullMovePruning = true;
+	private boolean lateMoveReductions = true;
+	private boolean aspirationWindows = true;
+	private long nullMoveTries;
+	private long nullMoveCutoffs;
+	private long reductions;
+	private long reductionResearches;
+	private long aspirationResearches;
+	private long tablebaseHits;
+	private long deadline;
+	private boolean canStop;
+	private volatile boolean stopped;
+
+	public Search(TranspositionTable transpositionTable) {
+		this.transpositionTable = transpositionTable;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	public Consumer<SearchResult> getIterationListener() {
+		return iterationListener;
+	}
+
+	// told the result of every completed iteration, on the searching thread
+	public void setIterationListener(Consumer<SearchResult> iterationListener) {
+		this.iterationListener = iterationListener;
+	}
+
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	// a book move is played as it is, without searching
+	static SearchResult probeBook(OpeningBook openingBook, BitBoard position) {
+		if (openingBook == null) {
+			return null;
+		}
+		int move = openingBook.selectMove(position);
+		return (move == Move.NONE) ? null : new SearchResult(move, 0, 0, 0, 0, new int[] { move });
+	}
+
+	public TablebaseProber getTablebases() {
+		return tablebases;
+	}
+
+	public void setTablebases(TablebaseProber tablebases) {
+		this.tablebases = tablebases;
+	}
+
+	// a tablebase value as a search score, mates counted from the root
+	static int tablebaseScore(int value, int ply) {
+		if (Tablebase.isWin(value)) {
+			return MATE - ply - (value - 1);
+		}
+		if (Tablebase.isLoss(value)) {
+			return -MATE + ply + (value - 1);
+		}
+		return 0;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	// share of beta cutoffs produced by the first move searched, the usual
+	// measure of how good the move ordering is
+	public double getFirstMoveCutoffRate() {
+		return (cutoffs > 0) ? (double) firstMoveCutoffs / cutoffs : 0.0;
+	}
+
+	public boolean getNullMovePruning() {
+		return nullMovePruning;
+	}
+
+	public void setNullMovePruning(boolean nullMovePruning) {
+		this.nullMovePruning = nullMovePruning;
+	}
+
+	public boolean getLateMoveReductions() {
+		return lateMoveReductions;
+	}
+
+	public void setLateMoveReductions(boolean lateMoveReductions) {
+		this.lateMoveReductions = lateMoveReductions;
+	}
+
+	public boolean getAspirationWindows() {
+		return aspirationWindows;
+	}
+
+	public void setAspirationWindows(boolean aspirationWindows) {
+		this.aspirationWindows = aspirationWindows;
+	}
+
+	public long getNullMoveTries() {
+		return nullMoveTries;
+	}
+
+	public long getNullMoveCutoffs() {
+		return nullMoveCutoffs;
+	}
+
+	public long getReductions() {
+		return reductions;
+	}
+
+	public long getReductionResearches() {
+		return reductionResearches;
+	}
+
+	public long getAspirationResearches() {
+		return aspirationResearches;
+	}
+
+	public long getTablebaseHits() {
+		return tablebaseHits;
+	}
+
+	// stops the running search, or the next one when it has not started yet
+	public void stop() {
+		stopped = true;
+	}
+
+	// drops a stop that came after its search had already returned; only call
+	// it while no search is running, e.g. after joining the searching thread
+	public void clearStop() {
+		stopped = false;
+	}
+
+	public SearchResult search(ChessMatch chessMatch, int maxDepth, long timeLimit) {
+		return search(chessMatch.getPosition(), maxDepth, timeLimit);
+	}
+
+	public SearchResult search(BitBoard position, int maxDepth, long timeLimit) {
+		SearchResult bookResult = probeBook(openingBook, position);
+		if (bookResult != null) {
+			return bookResult;
+		}
+		transpositionTable.newSearch();
+		return iterate(position, maxDepth, timeLimit, 1);
+	}
+
+	SearchResult iterate(BitBoard position, int maxDepth, long timeLimit, int startDepth) {
+		long start = System.currentTimeMillis();
+		bitBoard = position;
+		nodes = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+		nullMoveTries = 0;
+		nullMoveCutoffs = 0;
+		reductions = 0;
+		reductionResearches = 0;
+		aspirationResearches = 0;
+		tablebaseHits = 0;
+		for (int[] killer : killers) {
+			killer[0] = Move.NONE;
+			killer[1] = Move.NONE;
+		}
+		for (int i = 0; i < history.length; i++) {
+			history[i] >>= 2;
+		}
+		canStop = false;
+		deadline = (timeLimit > 0) ? start + timeLimit : Long.MAX_VALUE;
+		if (maxDepth <= 0 || maxDepth >= MAX_PLY) {
+			maxDepth = MAX_PLY - 1;
+		}
+
+		int bestMove = Move.NONE;
+		int bestScore = 0;
+		int completedDepth = 0;
+		int[] bestPv = new int[0];
+		for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+			int score = aspirate(depth, bestScore, completedDepth);
+			if (stopped) {
+				break;
+			}
+			bestScore = score;
+			completedDepth = depth;
+			bestPv = Arrays.copyOf(pv[0], pvLength[0]);
+			if (bestPv.length > 0) {
+				bestMove = bestPv[0];
+			}
+			canStop = true;
+			if (iterationListener != null) {
+				iterationListener.accept(new SearchResult(bestMove, bestScore, completedDepth, nodes,
+						System.currentTimeMillis() - start, bestPv));
+			}
+			if (System.currentTimeMillis() >= deadline) {
+				break;
+			}
+		}
+		if (bestMove == Move.NONE && bitBoard.generateLegalMoves(moves[0]) > 0) {
+			bestMove = moves[0][0];
+		}
+		// a stop, or the deadline, only ever ends the search that saw it
+		stopped = false;
+		return new SearchResult(bestMove, bestScore, completedDepth, nodes, System.currentTimeMillis() - start, bestPv);
+	}
+
+	// searches a narrow window around the previous iteration's score and widens
+	// it on the failing side until the score falls inside
+	private int aspirate(int depth, int previousScore, int completedDepth) {
+		if (!aspirationWindows || completedDepth < ASPIRATION_MIN_DEPTH - 1
+				|| Math.abs(previousScore) >= MATE - MAX_PLY) {
+			return negamax(depth, -INFINITY, INFINITY, 0, true);
+		}
+		int delta = ASPIRATION_WINDOW;
+		int alpha = previousScore - delta;
+		int beta = previousScore + delta;
+		while (true) {
+			int score = negamax(depth, alpha, beta, 0, true);
+			if (stopped) {
+				return score;
+			}
+			if (score <= alpha) {
+				alpha = Math.max(score - delta, -INFINITY);
+			} else if (score >= beta) {
+				beta = Math.min(score + delta, INFINITY);
+			} else {
+				return score;
+			}
+			aspirationResearches++;
+			delta *= 2;
+		}
+	}
+
+	private int negamax(int depth, int alpha, int beta, int ply, boolean nullAllowed) {
+		// below the configured piece count the tablebase answers exactly; the root
+		// is still searched so that a move comes back
+		if (tablebases != null && ply > 0 && bitBoard.getPieceCount() <= tablebases.getMaxPieces()) {
+			int value = tablebases.probe(bitBoard);
+			if (value != TablebaseProber.NOT_FOUND && value != Tablebase.ILLEGAL) {
+				tablebaseHits++;
+				pvLength[ply] = ply;
+				return tablebaseScore(value, ply);
+			}
+		}
+		if (depth <= 0 && !bitBoard.isInCheck()) {
+			return quiescence(alpha, beta, ply);
+		}
+		pvLength[ply] = ply;
+		if ((++nodes & CHECK_INTERVAL) == 0) {
+			checkTime();
+		}
+		if (stopped) {
+			return 0;
+		}
+		// the fifty-move rule and repetitions, including those of positions
+		// played before the search started, score as draws
+		if (ply > 0 && (bitBoard.getHalfmoveClock() >= 100 || bitBoard.isRepetition())) {
+			return 0;
+		}
+
+		boolean inCheck = bitBoard.isInCheck();
+		if (inCheck) {
+			depth++;
+		}
+		if (ply >= MAX_PLY - 1) {
+			return Evaluation.evaluate(bitBoard);
+		}
+
+		long hash = bitBoard.getHash();
+		int ttMove = Move.NONE;
+		long entry = transpositionTable.probe(hash);
+		if (entry != 0) {
+			ttMove = TranspositionTable.move(entry);
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int score = fromTranspositionTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+						|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+					return score;
+				}
+			}
+		}
+
+		// null move: if passing the turn still fails high, so would a real move;
+		// not tried with only pawns left, where passing may be the best move
+		int us = bitBoard.getSideToMove();
+		if (nullMovePruning && nullAllowed && ply > 0 && !inCheck && depth >= NULL_MOVE_MIN_DEPTH
+				&& bitBoard.getOccupancy(us) != (bitBoard.getPieces(us, BitBoard.PAWN)
+						| bitBoard.getPieces(us, BitBoard.KING))
+				&& Evaluation.evaluate(bitBoard) >= beta) {
+			nullMoveTries++;
+			int reduction = (depth > 6) ? 3 : 2;
+			bitBoard.makeNullMove();
+			int score = -negamax(depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+			bitBoard.undoNullMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score >= beta) {
+				nullMoveCutoffs++;
+				return (score >= MATE - MAX_PLY) ? beta : score;
+			}
+		}
+
+		int[] list = moves[ply];
+		int count = bitBoard.generateLegalMoves(list);
+		if (count == 0) {
+			return inCheck ? -MATE + ply : 0;
+		}
+		scoreMoves(list, moveScores[ply], count, ttMove, ply);
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestMove = Move.NONE;
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(list, moveScores[ply], i, count);
+			bitBoard.makeMove(move);
+			int score;
+			// late quiet moves, ordered below the killers, are first searched
+			// shallower with a null window and only re-searched if they beat alpha
+			if (lateMoveReductions && depth >= LMR_MIN_DEPTH && i >= LMR_MIN_MOVE && !inCheck
+					&& moveScores[ply][i] < KILLER_SCORE && !bitBoard.isInCheck()) {
+				reductions++;
+				int reduction = (i >= 6 && depth >= 6) ? 2 : 1;
+				score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+				if (score > alpha && !stopped) {
+					reductionResearches++;
+					score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+				}
+			} else {
+				score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+			}
+			bitBoard.undoMove(move);
+			if (stopped) {
+				return 0;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+				if (score > alpha) {
+					alpha = score;
+					updatePv(ply, move);
+					if (alpha >= beta) {
+						cutoffs++;
+						if (i == 0) {
+							firstMoveCutoffs++;
+						}
+						if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+							updateQuietCutoff(move, depth, ply);
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		int bound = (bestScore >= beta) ? TranspositionTable.LOWER_BOUND
+				: (bestScore > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+		transpositionTable.store(hash, bestMove, toTranspositionTable(bestScore, ply), depth, bound);
+		return bestScore;
+	}
+
+	// only captures and promotions are searched, and the side to move may stand pat
+	// on the static evaluation instead; in check every evasion is searched
+	private int quiescence(int alpha, int beta, int ply) {
+		pvLength[ply] = ply;
+		if ((++nodes & CHECK_INTERVAL) == 0) {
+			checkTime();
+		}
+		if (stopped) {
+			return 0;
+		}
+
+		boolean inCheck = bitBoard.isInCheck();
+		if (ply >= MAX_PLY - 1) {
+			return inCheck ? 0 : Evaluation.evaluate(bitBoard);
+		}
+		int[] list = moves[ply];
+		int count;
+		int bestScore;
+		if (inCheck) {
+			count = bitBoard.generateLegalMoves(list);
+			if (count == 0) {
+				return -MATE + ply;
+			}
+			bestScore = -INFINITY;
+		} else {
+			bestScore = Evaluation.evaluate(bitBoard);
+			if (bestScore >= beta) {
+				return bestScore;
+			}
+			if (bestScore > alpha) {
+				alpha = bestScore;
+			}
+			count = bitBoard.generateLegalCaptures(list);
+		}
+		scoreMoves(list, moveScores[ply], count, Move.NONE, ply);
+
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(list, moveScores[ply], i, count);
+			// a capture that loses material cannot raise the stand-pat score
+			if (!inCheck && staticExchange.evaluate(bitBoard, move) < 0) {
+				continue;
+			}
+			bitBoard.makeMove(move);
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			bitBoard.undoMove(move);
+			if (stopped) {
+				return 0;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				if (score > alpha) {
+					alpha = score;
+					updatePv(ply, move);
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		return bestScore;
+	}
+
+	private void scoreMoves(int[] list, int[] scores, int count, int ttMove, int ply) {
+		int side = bitBoard.getSideToMove() * 64 * 64;
+		for (int i = 0; i < count; i++) {
+			int move = list[i];
+			if (move == ttMove) {
+				scores[i] = TT_MOVE_SCORE;
+			} else if (Move.isCapture(move) || Move.isPromotion(move)) {
+				// victims count from 1 so a plain promotion sorts below any capture;
+				// an en passant victim is not on the target square but is always a pawn
+				int victim = 0;
+				if (Move.isCapture(move)) {
+					victim = 1 + (((Move.flags(move) & Move.EN_PASSANT) != 0) ? BitBoard.PAWN
+							: BitBoard.typeOf(bitBoard.pieceAt(Move.to(move))));
+				}
+				int attacker = BitBoard.typeOf(bitBoard.pieceAt(Move.from(move)));
+				scores[i] = CAPTURE_SCORE + (victim + Move.promotion(move)) * 8 + BitBoard.KING - attacker;
+			} else if (move == killers[ply][0]) {
+				scores[i] = KILLER_SCORE + 1;
+			} else if (move == killers[ply][1]) {
+				scores[i] = KILLER_SCORE;
+			} else {
+				scores[i] = history[side + Move.from(move) * 64 + Move.to(move)];
+			}
+		}
+	}
+
+	// selection sort one step at a time, since a cutoff often comes before the
+	// rest of the list is needed
+	private static int nextMove(int[] list, int[] scores, int index, int count) {
+		int best = index;
+		for (int i = index + 1; i < count; i++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+		int move = list[best];
+		list[best] = list[index];
+		list[index] = move;
+		int score = scores[best];
+		scores[best] = scores[index];
+		scores[index] = score;
+		return move;
+	}
+
+	private void updateQuietCutoff(int move, int depth, int ply) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int index = bitBoard.getSideToMove() * 64 * 64 + Move.from(move) * 64 + Move.to(move);
+		history[index] += depth * depth;
+		if (history[index] >= HISTORY_LIMIT) {
+			for (int i = 0; i < history.length; i++) {
+				history[i] >>= 1;
+			}
+		}
+	}
+
+	private void updatePv(int ply, int move) {
+		pv[ply][ply] = move;
+		for (int i = ply + 1; i < pvLength[ply + 1]; i++) {
+			pv[ply][i] = pv[ply + 1][i];
+		}
+		pvLength[ply] = pvLength[ply + 1];
+	}
+
+	private void checkTime() {
+		if (canStop && System.currentTimeMillis() >= deadline) {
+			stopped = true;
+		}
+	}
+
+	private static int toTranspositionTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY) {
+			return score + ply;
+		}
+		if (score <= -MATE + MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromTranspositionTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY) {
+			return score - ply;
+		}
+		if (score <= -MATE + MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+}
@@ -0,0 +1,71 @@
+package chess.engine;
+
+import chess.Move;
+
+public class SearchResult {
+
+	private int bestMove;
+	private int score;
+	private int depth;
+	private long nodes;
+	private long elapsed;
+	private int[] principalVariation;
+
+	public SearchResult(int bestMove, int score, int depth, long nodes, long elapsed, int[] principalVariation) {
+		this.bestMove = bestMove;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.elapsed = elapsed;
+		this.principalVariation = principalVariation;
+	}
+
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public int[] getPrincipalVariation() {
+		return principalVariation;
+	}
+
+	public long getNodesPerSecond() {
+		return (elapsed > 0) ? nodes * 1000 / elapsed : nodes;
+	}
+
+	public boolean isMate() {
+		return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+	}
+
+	public String principalVariationString() {
+		StringBuilder sb = new StringBuilder();
+		for (int move : principalVariation) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(Move.toString(move));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "Best move: " + Move.toString(bestMove) + ", score = " + score + ", depth = " + depth + ", nodes = "
+				+ nodes + ", pv = " + principalVariationString();
+	}
+}
@@ -0,0 +1,80 @@
+package chess.engine;
+
+import chess.Attacks;
+import chess.BitBoard;
+import chess.Move;
+
+// https://www.chessprogramming.org/SEE_-_The_Swap_Algorithm
+public class StaticExchange {
+
+	// the king is worth more than anything it could win, so a capture that leaves
+	// it en prise ends the exchange
+	private static final int[] VALUES = { 100, 320, 330, 500, 900, 20000 };
+
+	private int[] gain = new int[32];
+
+	// net material won by the side making the move once both sides have captured
+	// on the target square with their least valuable attackers for as long as it
+	// pays; pins are not taken into account
+	public int evaluate(BitBoard bitBoard, int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int piece = BitBoard.typeOf(bitBoard.pieceAt(from));
+		int side = BitBoard.colorOf(bitBoard.pieceAt(from));
+		long occupied = bitBoard.getOccupied();
+
+		int captured = 0;
+		if ((Move.flags(move) & Move.EN_PASSANT) != 0) {
+			captured = VALUES[BitBoard.PAWN];
+			occupied ^= 1L << ((side == BitBoard.WHITE) ? to - 8 : to + 8);
+		} else if (Move.isCapture(move)) {
+			captured = VALUES[BitBoard.typeOf(bitBoard.pieceAt(to))];
+		}
+		if (Move.isPromotion(move)) {
+			captured += VALUES[Move.promotion(move)] - VALUES[BitBoard.PAWN];
+			piece = Move.promotion(move);
+		}
+
+		long diagonal = bitBoard.getPieces(BitBoard.WHITE, BitBoard.BISHOP)
+				| bitBoard.getPieces(BitBoard.BLACK, BitBoard.BISHOP) | bitBoard.getPieces(BitBoard.WHITE, BitBoard.QUEEN)
+				| bitBoard.getPieces(BitBoard.BLACK, BitBoard.QUEEN);
+		long straight = bitBoard.getPieces(BitBoard.WHITE, BitBoard.ROOK)
+				| bitBoard.getPieces(BitBoard.BLACK, BitBoard.ROOK) | bitBoard.getPieces(BitBoard.WHITE, BitBoard.QUEEN)
+				| bitBoard.getPieces(BitBoard.BLACK, BitBoard.QUEEN);
+		long attackers = bitBoard.attackersTo(to, BitBoard.WHITE, occupied)
+				| bitBoard.attackersTo(to, BitBoard.BLACK, occupied);
+
+		int depth = 0;
+		gain[0] = captured;
+		long fromBit = 1L << from;
+		while (true) {
+			depth++;
+			gain[depth] = VALUES[piece] - gain[depth - 1];
+			if (depth == gain.length - 1) {
+				break;
+			}
+			// removing the capturer may uncover a slider behind it
+			occupied ^= fromBit;
+			attackers |= (Attacks.bishop(to, occupied) & diagonal) | (Attacks.rook(to, occupied) & straight);
+			attackers &= occupied;
+
+			side ^= 1;
+			fromBit = 0L;
+			for (int type = BitBoard.PAWN; type <= BitBoard.KING; type++) {
+				long candidates = attackers & bitBoard.getPieces(side, type);
+				if (candidates != 0) {
+					fromBit = candidates & -candidates;
+					piece = type;
+					break;
+				}
+			}
+			if (fromBit == 0) {
+				break;
+			}
+		}
+		while (--depth > 0) {
+			gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+		}
+		return gain[0];
+	}
+}
@@ -0,0 +1,113 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.Move;
+
+public class TranspositionTable {
+
+	public static final int EXACT = 1;
+	public static final int LOWER_BOUND = 2;
+	public static final int UPPER_BOUND = 3;
+
+	private static final int ENTRY_BYTES = 16;
+	// two longs an entry must still index a Java array
+	private static final long MAX_ENTRIES = 1L << 29;
+	public static final int MAX_MEGABYTES = (int) (MAX_ENTRIES * ENTRY_BYTES / (1024 * 1024));
+
+	// data word: bits 0-18 move, 19-34 score, 35-42 depth, 43-44 bound, 45-52 generation
+	private static final int SCORE_SHIFT = 19;
+	private static final int DEPTH_SHIFT = 35;
+	private static final int BOUND_SHIFT = 43;
+	private static final int GENERATION_SHIFT = 45;
+
+	// each entry is two words, key ^ data followed by data, so a torn write
+	// from a concurrent store never verifies against the probed key
+	private final long[] table;
+	private final int mask;
+	private volatile int generation;
+
+	public TranspositionTable(int megabytes) {
+		if (megabytes < 1) {
+			throw new IllegalArgumentException("Transposition table size must be at least 1 MB");
+		}
+		long entries = Long.highestOneBit(megabytes * 1024L * 1024L / ENTRY_BYTES);
+		entries = Math.min(entries, MAX_ENTRIES);
+		table = new long[(int) entries * 2];
+		mask = (int) entries - 1;
+	}
+
+	public int getSize() {
+		return mask + 1;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0L);
+		generation = 0;
+	}
+
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	public long probe(long key) {
+		int index = (int) key & mask;
+		long data = table[index * 2 + 1];
+		long check = table[index * 2];
+		if (data != 0 && (check ^ data) == key) {
+			return data;
+		}
+		return 0L;
+	}
+
+	public void store(long key, int move, int score, int depth, int bound) {
+		int index = (int) key & mask;
+		long oldData = table[index * 2 + 1];
+		long oldKey = table[index * 2] ^ oldData;
+		if (oldData != 0) {
+			if (oldKey == key) {
+				if (move == Move.NONE) {
+					move = move(oldData);
+				}
+			} else if (generation(oldData) == generation && depth(oldData) > depth) {
+				return;
+			}
+		}
+		long data = (move & 0x7FFFFL) | ((score & 0xFFFFL) << SCORE_SHIFT) | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT) | ((long) generation << GENERATION_SHIFT);
+		table[index * 2] = key ^ data;
+		table[index * 2 + 1] = data;
+	}
+
+	public int hashfull() {
+		int used = 0;
+		int sample = Math.min(1000, mask + 1);
+		for (int i = 0; i < sample; i++) {
+			long data = table[i * 2 + 1];
+			if (data != 0 && generation(data) == generation) {
+				used++;
+			}
+		}
+		return used * 1000 / sample;
+	}
+
+	public static int move(long data) {
+		return (int) (data & 0x7FFFF);
+	}
+
+	public static int score(long data) {
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	public static int depth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int bound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 3;
+	}
+
+	private static int generation(long data) {
+		return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+	}
+}
@@ -0,0 +1,134 @@
+package chess.pgn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+import chess.ChessMatch;
+
+// Splits a game file into chunks at game boundaries and replays the chunks in
+// parallel, each worker thread with its own ChessMatch. At most maxInFlight chunks
+// are read ahead of the workers, which bounds the memory whatever the file size.
+public class PgnAnalyzer {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private ForkJoinPool pool;
+	private int maxInFlight;
+	private int chunkSize;
+
+	private ThreadLocal<ChessMatch> matches = ThreadLocal.withInitial(ChessMatch::new);
+
+	public PgnAnalyzer(ForkJoinPool pool, int maxInFlight) {
+		this(pool, maxInFlight, DEFAULT_CHUNK_SIZE);
+	}
+
+	public PgnAnalyzer(ForkJoinPool pool, int maxInFlight, int chunkSize) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("There must be at least 1 chunk in flight");
+		}
+		this.pool = pool;
+		this.maxInFlight = maxInFlight;
+		this.chunkSize = chunkSize;
+	}
+
+	public PgnReport analyze(Path path) throws IOException {
+		PgnReport total = new PgnReport();
+		IOException[] failure = new IOException[1];
+		Semaphore inFlight = new Semaphore(maxInFlight);
+
+		byte[] buffer = new byte[chunkSize];
+		int length = 0;
+		try (InputStream in = Files.newInputStream(path)) {
+			while (true) {
+				int n = in.read(buffer, length, buffer.length - length);
+				if (n > 0) {
+					length += n;
+					if (length < buffer.length) {
+						continue;
+					}
+				}
+				if (n < 0 && length == 0) {
+					break;
+				}
+				int end = (n < 0) ? length : lastGameStart(buffer, length);
+				if (end == 0) {
+					// a single game larger than the buffer
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					continue;
+				}
+				byte[] chunk = Arrays.copyOf(buffer, end);
+				System.arraycopy(buffer, end, buffer, 0, length - end);
+				length -= end;
+
+				inFlight.acquire();
+				pool.execute(() -> {
+					try {
+						PgnReport report = analyze(chunk);
+						synchronized (total) {
+							total.merge(report);
+						}
+					} catch (IOException e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					} finally {
+						inFlight.release();
+					}
+				});
+				if (n < 0) {
+					break;
+				}
+			}
+			inFlight.acquire(maxInFlight);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Game analysis interrupted");
+		}
+
+		synchronized (failure) {
+			if (failure[0] != null) {
+				throw new IOException("Game analysis failed", failure[0]);
+			}
+		}
+		return total;
+	}
+
+	private PgnReport analyze(byte[] chunk) throws IOException {
+		PgnReport report = new PgnReport();
+		ChessMatch chessMatch = matches.get();
+		PgnReader reader = new PgnReader(ByteBuffer.wrap(chunk));
+		while (true) {
+			try {
+				if (!reader.nextGame(chessMatch)) {
+					break;
+				}
+				report.addGame(reader.getResult(), chessMatch.getCheckMate(), chessMatch.getStaleMate());
+			} catch (RuntimeException e) {
+				// PgnException, or anything else one bad game provokes; the
+				// reader has moved past it either way
+				report.addIllegal();
+			}
+		}
+		report.addMoves(reader.getMoves());
+		return report;
+	}
+
+	// a tag right after a blank line starts a game, while the blank line inside a
+	// game is followed by the movetext
+	private static int lastGameStart(byte[] buffer, int length) {
+		for (int i = length - 1; i >= 2; i--) {
+			if (buffer[i] == '[' && buffer[i - 1] == '\n'
+					&& (buffer[i - 2] == '\n' || (buffer[i - 2] == '\r' && i >= 3 && buffer[i - 3] == '\n'))) {
+				return i;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,25 @@
+package chess.pgn;
+
+import chess.ChessException;
+
+public class PgnException extends ChessException {
+
+	private static final long serialVersionUID = 1L;
+
+	private long game;
+	private int ply;
+
+	public PgnException(String msg, long game, int ply) {
+		super(msg);
+		this.game = game;
+		this.ply = ply;
+	}
+
+	public long getGame() {
+		return game;
+	}
+
+	public int getPly() {
+		return ply;
+	}
+}
@@ -0,0 +1,307 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Move;
+
+// Reads PGN games one at a time from a channel or a buffer and replays their moves
+// through a ChessMatch. The text is scanned byte by byte, so a game is never held in
+// memory as a whole.
+public class PgnReader implements Closeable {
+
+	public static final int UNKNOWN = 0;
+	public static final int WHITE_WINS = 1;
+	public static final int BLACK_WINS = 2;
+	public static final int DRAW = 3;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_TOKEN = 256;
+	private static final int EOF = -1;
+	private static final int NONE = -2;
+
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+	private int pending = NONE;
+
+	private char[] token = new char[MAX_TOKEN];
+	private int tokenLength;
+	private StringBuilder fen = new StringBuilder();
+	private int[] moves = new int[BitBoard.MAX_MOVES];
+
+	private long games;
+	private long totalMoves;
+	private int ply;
+	private int result;
+
+	public PgnReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	public PgnReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.limit(0);
+	}
+
+	// reads the games already held in memory, from the buffer's position to its limit
+	public PgnReader(ByteBuffer data) {
+		buffer = data;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getMoves() {
+		return totalMoves;
+	}
+
+	public int getPly() {
+		return ply;
+	}
+
+	public int getResult() {
+		return result;
+	}
+
+	// replays the next game into the match and returns false at the end of the
+	// input; a bad FEN or an illegal move skips the rest of the game and throws
+	// PgnException, so reading can carry on with the following one
+	public boolean nextGame(ChessMatch chessMatch) throws IOException {
+		fen.setLength(0);
+		ply = 0;
+		result = UNKNOWN;
+		boolean tags = false;
+		boolean started = false;
+		int c;
+		while ((c = skipWhitespace()) != EOF) {
+			if (c == '[') {
+				if (started) {
+					pending = c;
+					break;
+				}
+				readTag();
+				tags = true;
+			} else if (c == '{') {
+				skipUntil('}');
+			} else if (c == ';') {
+				skipUntil('\n');
+			} else if (c == '(') {
+				skipVariation();
+			} else {
+				readToken(c);
+				if (c == '$') {
+					continue;
+				}
+				if (!started) {
+					start(chessMatch);
+					started = true;
+				}
+				if (readResult()) {
+					break;
+				}
+				play(chessMatch);
+			}
+		}
+		if (!started) {
+			if (!tags) {
+				return false;
+			}
+			start(chessMatch);
+		}
+		games++;
+		return true;
+	}
+
+	private void start(ChessMatch chessMatch) throws IOException {
+		try {
+			chessMatch.loadFen((fen.length() > 0) ? fen.toString() : BitBoard.START_FEN);
+		} catch (RuntimeException e) {
+			throw illegal(e.getMessage());
+		}
+	}
+
+	private void play(ChessMatch chessMatch) throws IOException {
+		int length = skipMoveNumber();
+		if (length == 0) {
+			return;
+		}
+		ply++;
+		int count = chessMatch.legalMoves(moves);
+		int move = San.resolve(chessMatch, token, length, moves, count);
+		if (move == Move.NONE) {
+			throw illegal("Illegal move " + new String(token, 0, length));
+		}
+		try {
+			chessMatch.performChessMove(move);
+		} catch (RuntimeException e) {
+			throw illegal(e.getMessage());
+		}
+		totalMoves++;
+	}
+
+	private PgnException illegal(String msg) throws IOException {
+		long game = ++games;
+		skipGame();
+		return new PgnException(msg + " in game " + game + " at ply " + ply, game, ply);
+	}
+
+	private void skipGame() throws IOException {
+		int c;
+		while ((c = skipWhitespace()) != EOF) {
+			if (c == '[') {
+				pending = c;
+				return;
+			} else if (c == '{') {
+				skipUntil('}');
+			} else if (c == ';') {
+				skipUntil('\n');
+			} else if (c == '(') {
+				skipVariation();
+			} else {
+				readToken(c);
+				if (readResult()) {
+					return;
+				}
+			}
+		}
+	}
+
+	// "12." and "12..." precede moves, sometimes with no space before the move
+	private int skipMoveNumber() {
+		int i = 0;
+		while (i < tokenLength && token[i] >= '0' && token[i] <= '9') {
+			i++;
+		}
+		if (i == 0) {
+			return tokenLength;
+		}
+		while (i < tokenLength && token[i] == '.') {
+			i++;
+		}
+		System.arraycopy(token, i, token, 0, tokenLength - i);
+		tokenLength -= i;
+		return tokenLength;
+	}
+
+	private boolean readResult() {
+		if (tokenEquals("1-0")) {
+			result = WHITE_WINS;
+		} else if (tokenEquals("0-1")) {
+			result = BLACK_WINS;
+		} else if (tokenEquals("1/2-1/2")) {
+			result = DRAW;
+		} else if (tokenEquals("*")) {
+			result = UNKNOWN;
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean tokenEquals(String s) {
+		if (tokenLength != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the first character is always taken, so a stray delimiter cannot stall the reader
+	private void readToken(int c) throws IOException {
+		tokenLength = 0;
+		do {
+			if (tokenLength < MAX_TOKEN) {
+				token[tokenLength++] = (char) c;
+			}
+			c = read();
+		} while (c != EOF && c > ' ' && "{}()[];".indexOf(c) < 0);
+		pending = (c == EOF) ? NONE : c;
+	}
+
+	// only the FEN tag changes how a game is replayed, the others are skipped
+	private void readTag() throws IOException {
+		readToken(skipWhitespace());
+		boolean isFen = tokenEquals("FEN");
+		int c = skipWhitespace();
+		if (c == '"') {
+			while ((c = read()) != EOF && c != '"') {
+				if (c == '\\') {
+					c = read();
+				}
+				if (isFen) {
+					fen.append((char) c);
+				}
+			}
+		}
+		skipUntil(']');
+	}
+
+	private void skipVariation() throws IOException {
+		int depth = 1;
+		int c;
+		while (depth > 0 && (c = read()) != EOF) {
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '{') {
+				skipUntil('}');
+			}
+		}
+	}
+
+	private void skipUntil(int end) throws IOException {
+		int c;
+		while ((c = read()) != EOF && c != end) {
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = read()) != EOF && c <= ' ') {
+		}
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (pending != NONE) {
+			int c = pending;
+			pending = NONE;
+			return c;
+		}
+		if (!buffer.hasRemaining()) {
+			if (channel == null) {
+				return EOF;
+			}
+			buffer.clear();
+			int n;
+			while ((n = channel.read(buffer)) == 0) {
+			}
+			buffer.flip();
+			if (n < 0) {
+				return EOF;
+			}
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package chess.pgn;
+
+public class PgnReport {
+
+	private long games;
+	private long moves;
+	private long whiteWins;
+	private long blackWins;
+	private long draws;
+	private long unfinished;
+	private long illegal;
+	private long checkMates;
+	private long staleMates;
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getMoves() {
+		return moves;
+	}
+
+	public long getWhiteWins() {
+		return whiteWins;
+	}
+
+	public long getBlackWins() {
+		return blackWins;
+	}
+
+	public long getDraws() {
+		return draws;
+	}
+
+	public long getUnfinished() {
+		return unfinished;
+	}
+
+	public long getIllegal() {
+		return illegal;
+	}
+
+	public long getCheckMates() {
+		return checkMates;
+	}
+
+	public long getStaleMates() {
+		return staleMates;
+	}
+
+	public void addGame(int result, boolean checkMate, boolean staleMate) {
+		games++;
+		switch (result) {
+		case PgnReader.WHITE_WINS:
+			whiteWins++;
+			break;
+		case PgnReader.BLACK_WINS:
+			blackWins++;
+			break;
+		case PgnReader.DRAW:
+			draws++;
+			break;
+		default:
+			unfinished++;
+		}
+		if (checkMate) {
+			checkMates++;
+		}
+		if (staleMate) {
+			staleMates++;
+		}
+	}
+
+	public void addIllegal() {
+		games++;
+		illegal++;
+	}
+
+	public void addMoves(long moves) {
+		this.moves += moves;
+	}
+
+	public void merge(PgnReport other) {
+		games += other.games;
+		moves += other.moves;
+		whiteWins += other.whiteWins;
+		blackWins += other.blackWins;
+		draws += other.draws;
+		unfinished += other.unfinished;
+		illegal += other.illegal;
+		checkMates += other.checkMates;
+		staleMates += other.staleMates;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Games: %,d (%,d moves)%n1-0: %,d, 0-1: %,d, 1/2-1/2: %,d, *: %,d%n"
+				+ "Illegal games: %,d%nCheckmates: %,d, stalemates: %,d", games, moves, whiteWins, blackWins, draws,
+				unfinished, illegal, checkMates, staleMates);
+	}
+}
@@ -0,0 +1,91 @@
+package chess.pgn;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Move;
+
+public final class San {
+
+	private static final String PIECES = "PNBRQK";
+
+	private San() {
+	}
+
+	// resolves a SAN token such as "Nbd7", "exd6", "e8=Q+" or "O-O-O" against the
+	// legal moves of the position; Move.NONE when no move or more than one matches
+	public static int resolve(ChessMatch chessMatch, char[] san, int length, int[] moves, int count) {
+		while (length > 0 && "+#!?".indexOf(san[length - 1]) >= 0) {
+			length--;
+		}
+
+		// #specialmove castling
+		if (length >= 3 && (san[0] == 'O' || san[0] == '0')) {
+			boolean kingside = length < 5;
+			for (int i = 0; i < count; i++) {
+				int move = moves[i];
+				if ((Move.flags(move) & Move.CASTLING) != 0 && (Move.to(move) > Move.from(move)) == kingside) {
+					return move;
+				}
+			}
+			return Move.NONE;
+		}
+
+		int type = BitBoard.PAWN;
+		int start = 0;
+		if (length > 0 && san[0] != 'P' && PIECES.indexOf(san[0]) > 0) {
+			type = PIECES.indexOf(san[0]);
+			start = 1;
+		}
+
+		// #specialmove promotion
+		int promotion = 0;
+		if (length > 2 && PIECES.indexOf(san[length - 1]) > 0) {
+			promotion = PIECES.indexOf(san[length - 1]);
+			length--;
+			if (san[length - 1] == '=') {
+				length--;
+			}
+		}
+
+		if (length - start < 2) {
+			return Move.NONE;
+		}
+		int file = san[length - 2] - 'a';
+		int rank = san[length - 1] - '1';
+		if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+			return Move.NONE;
+		}
+		int to = rank * 8 + file;
+
+		int fromFile = -1;
+		int fromRank = -1;
+		for (int i = start; i < length - 2; i++) {
+			char c = san[i];
+			if (c >= 'a' && c <= 'h') {
+				fromFile = c - 'a';
+			} else if (c >= '1' && c <= '8') {
+				fromRank = c - '1';
+			} else if (c != 'x' && c != '-') {
+				return Move.NONE;
+			}
+		}
+
+		int found = Move.NONE;
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int from = Move.from(move);
+			if (Move.to(move) != to || BitBoard.typeOf(chessMatch.pieceAt(from)) != type
+					|| Move.promotion(move) != promotion) {
+				continue;
+			}
+			if ((fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+				continue;
+			}
+			if (found != Move.NONE) {
+				return Move.NONE;
+			}
+			found = move;
+		}
+		return found;
+	}
+}
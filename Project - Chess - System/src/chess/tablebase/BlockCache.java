@@ -0,0 +1,58 @@
+package chess.tablebase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// decoded tablebase blocks, least recently used first out, shared by all threads
+public class BlockCache {
+
+	private int capacity;
+	private long hits;
+	private long misses;
+	private Map<Long, byte[]> blocks;
+
+	public BlockCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The cache must hold at least 1 block");
+		}
+		this.capacity = capacity;
+		blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+				return size() > BlockCache.this.capacity;
+			}
+		};
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized byte[] get(long key) {
+		byte[] block = blocks.get(key);
+		if (block == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return block;
+	}
+
+	public synchronized void put(long key, byte[] block) {
+		blocks.put(key, block);
+	}
+
+	public synchronized void clear() {
+		blocks.clear();
+	}
+}
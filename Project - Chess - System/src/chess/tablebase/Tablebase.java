@@ -0,0 +1,132 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import chess.BitBoard;
+
+// One endgame of the project's own tablebase format, memory-mapped. The file
+// holds a little-endian header followed by deflated blocks of one value byte
+// per position:
+//
+//   int magic, int piece count, byte[16] pieces in index order,
+//   int positions per block, int block count, long positions,
+//   long[block count + 1] block offsets, blocks
+//
+// A position's index is side to move * 64^n + the square of each piece in
+// header order as base 64 digits. The value is DRAW, ILLEGAL, or the distance
+// to mate in plies plus one: odd plies win for the side to move, even plies lose.
+public class Tablebase {
+
+	public static final int MAGIC = 0x31425443;
+	public static final int MAX_PIECES = 16;
+
+	public static final int DRAW = 0;
+	public static final int ILLEGAL = 255;
+
+	static final int HEADER_SIZE = 40;
+
+	private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+	private int id;
+	private MappedByteBuffer data;
+	private int[] pieces;
+	private int blockSize;
+	private int blockCount;
+	private long size;
+
+	public Tablebase(Path path, int id) throws IOException {
+		this.id = id;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+			throw new IOException("Not a tablebase: " + path);
+		}
+		pieces = new int[data.getInt(4)];
+		for (int i = 0; i < pieces.length; i++) {
+			pieces[i] = data.get(8 + i);
+		}
+		blockSize = data.getInt(24);
+		blockCount = data.getInt(28);
+		size = data.getLong(32);
+	}
+
+	public int[] getPieces() {
+		return pieces.clone();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public static boolean isWin(int value) {
+		return value != DRAW && value != ILLEGAL && ((value - 1) & 1) != 0;
+	}
+
+	public static boolean isLoss(int value) {
+		return value != DRAW && value != ILLEGAL && ((value - 1) & 1) == 0;
+	}
+
+	// with flip the position is read with colors swapped and the board mirrored,
+	// which is how a table with the stronger side as white answers for black
+	long index(BitBoard position, boolean flip) {
+		return index(pieces, position, flip);
+	}
+
+	static long index(int[] pieces, BitBoard position, boolean flip) {
+		long index = position.getSideToMove() ^ (flip ? 1 : 0);
+		for (int i = 0; i < pieces.length; i++) {
+			int piece = pieces[i];
+			int color = BitBoard.colorOf(piece) ^ (flip ? 1 : 0);
+			long bb = position.getPieces(color, BitBoard.typeOf(piece));
+			// identical pieces take their squares in ascending order
+			for (int j = 0; j < i; j++) {
+				if (pieces[j] == piece) {
+					bb &= bb - 1;
+				}
+			}
+			int square = Long.numberOfTrailingZeros(bb);
+			index = index * 64 + (flip ? square ^ 56 : square);
+		}
+		return index;
+	}
+
+	int probe(long index, BlockCache cache) throws DataFormatException {
+		int block = (int) (index / blockSize);
+		long key = ((long) id << 32) | block;
+		byte[] values = cache.get(key);
+		if (values == null) {
+			values = decode(block);
+			cache.put(key, values);
+		}
+		return values[(int) (index % blockSize)] & 0xFF;
+	}
+
+	private byte[] decode(int block) throws DataFormatException {
+		if (block >= blockCount) {
+			throw new DataFormatException("Block " + block + " out of range");
+		}
+		int start = (int) data.getLong(HEADER_SIZE + block * 8);
+		int end = (int) data.getLong(HEADER_SIZE + (block + 1) * 8);
+		byte[] compressed = new byte[end - start];
+		ByteBuffer source = data.duplicate();
+		source.position(start);
+		source.get(compressed);
+
+		Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		inflater.setInput(compressed);
+		byte[] values = new byte[blockSize];
+		inflater.inflate(values);
+		return values;
+	}
+}
@@ -0,0 +1,429 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import chess.Attacks;
+import chess.BitBoard;
+import chess.Move;
+
+// Builds distance-to-mate tables by retrograde analysis. Every position of an
+// ending gets one byte in an array indexed as in Tablebase. A first pass marks
+// illegal positions and checkmates, and notes when a capture or promotion into
+// an already solved ending decides a position. Then pass n takes the positions
+// solved at n - 1 plies, walks their moves backwards and resolves those
+// predecessors which now win or lose in n plies. Each pass is split across the
+// pool; a position is only ever written with the value of the current pass, so
+// workers racing on the same entry agree.
+public class TablebaseGenerator {
+
+	// 2 * 64^4 entries still fit in an array
+	public static final int MAX_PIECES = 4;
+
+	private static final int MAX_PLIES = 253;
+	private static final int CHUNKS_PER_THREAD = 16;
+	private static final long RANK_1_AND_8 = 0xFF000000000000FFL;
+
+	private ForkJoinPool pool;
+	private Map<Long, Table> tables = new HashMap<>();
+	private List<TablebaseReport> reports = new ArrayList<>();
+
+	private ThreadLocal<BitBoard> boards = ThreadLocal.withInitial(BitBoard::new);
+	private ThreadLocal<int[]> moveBuffers = ThreadLocal.withInitial(() -> new int[BitBoard.MAX_MOVES]);
+
+	private static class Table {
+		int[] pieces;
+		byte[] values;
+		// the pass at which a capture or promotion may decide the position, 0 if none
+		byte[] scheduled;
+
+		Table(int[] pieces) {
+			this.pieces = pieces;
+			values = new byte[2 << (6 * pieces.length)];
+			scheduled = new byte[values.length];
+		}
+	}
+
+	private interface ChunkTask {
+		int run(int start, int end);
+	}
+
+	public TablebaseGenerator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public List<TablebaseReport> getReports() {
+		return Collections.unmodifiableList(reports);
+	}
+
+	// generates the ending, as in KQvK or KQK, after every ending it can turn into
+	public void generate(String material) {
+		generate(canonical(parseMaterial(material)));
+	}
+
+	// writes every ending generated so far, one file each
+	public void write(Path directory) throws IOException {
+		for (Map.Entry<Long, Table> entry : tables.entrySet()) {
+			Table table = entry.getValue();
+			Path path = directory.resolve(TablebaseProber.name(entry.getKey()) + TablebaseProber.EXTENSION);
+			new TablebaseWriter(table.pieces, table.values).write(path);
+		}
+	}
+
+	private void generate(long key) {
+		if (tables.containsKey(key)) {
+			return;
+		}
+		for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+			for (int type = BitBoard.PAWN; type < BitBoard.KING; type++) {
+				long piece = 1L << ((color * 6 + type) * 4);
+				if (count(key, color * 6 + type) == 0) {
+					continue;
+				}
+				generate(canonical(key - piece));
+				if (type == BitBoard.PAWN) {
+					for (int promotion = BitBoard.KNIGHT; promotion <= BitBoard.QUEEN; promotion++) {
+						generate(canonical(key - piece + (1L << ((color * 6 + promotion) * 4))));
+					}
+				}
+			}
+		}
+
+		List<MemoryPoolMXBean> heap = new ArrayList<>();
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				memoryPool.resetPeakUsage();
+				heap.add(memoryPool);
+			}
+		}
+		long start = System.currentTimeMillis();
+
+		Table table = new Table(pieces(key));
+		int maxScheduled = forEachChunk(table.values.length, (s, e) -> seed(table, s, e));
+		for (int plies = 1;; plies++) {
+			if (plies > MAX_PLIES) {
+				throw new IllegalStateException("Mates longer than " + MAX_PLIES + " plies in "
+						+ TablebaseProber.name(key));
+			}
+			int p = plies;
+			boolean found = forEachChunk(table.values.length, (s, e) -> pass(table, p, s, e)) != 0;
+			if (!found && plies > maxScheduled) {
+				break;
+			}
+		}
+		table.scheduled = null;
+		tables.put(key, table);
+
+		long peakMemory = 0L;
+		for (MemoryPoolMXBean memoryPool : heap) {
+			peakMemory += memoryPool.getPeakUsage().getUsed();
+		}
+		reports.add(new TablebaseReport(TablebaseProber.name(key), table.values,
+				System.currentTimeMillis() - start, peakMemory));
+	}
+
+	// marks illegal positions and checkmates, and schedules the positions with a
+	// capture or promotion: the earliest pass they could win at if one of those
+	// reaches a lost position, or the last pass they could lose at if all of them
+	// reach won ones
+	private int seed(Table table, int start, int end) {
+		BitBoard board = boards.get();
+		int[] moves = moveBuffers.get();
+		int maxScheduled = 0;
+		for (int index = start; index < end; index++) {
+			if (!setUp(board, table.pieces, index)) {
+				table.values[index] = (byte) Tablebase.ILLEGAL;
+				continue;
+			}
+			if (board.isInCheck(board.getSideToMove() ^ 1)) {
+				table.values[index] = (byte) Tablebase.ILLEGAL;
+				clear(board);
+				continue;
+			}
+			int count = board.generateLegalMoves(moves);
+			if (count == 0) {
+				if (board.isInCheck()) {
+					table.values[index] = 1;
+				}
+				clear(board);
+				continue;
+			}
+			int fastestLoss = Integer.MAX_VALUE;
+			int slowestWin = -1;
+			boolean allWins = true;
+			for (int i = 0; i < count; i++) {
+				int move = moves[i];
+				if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+					continue;
+				}
+				board.makeMove(move);
+				int value = childValue(table, board, move);
+				board.undoMove(move);
+				if (Tablebase.isLoss(value)) {
+					fastestLoss = Math.min(fastestLoss, value - 1);
+				} else if (Tablebase.isWin(value)) {
+					slowestWin = Math.max(slowestWin, value - 1);
+				} else {
+					allWins = false;
+				}
+			}
+			clear(board);
+			int pass = 0;
+			if (fastestLoss != Integer.MAX_VALUE) {
+				pass = fastestLoss + 1;
+			} else if (allWins && slowestWin >= 0) {
+				pass = slowestWin + 1;
+			}
+			if (pass > MAX_PLIES) {
+				throw new IllegalStateException("Mates longer than " + MAX_PLIES + " plies");
+			}
+			table.scheduled[index] = (byte) pass;
+			maxScheduled = Math.max(maxScheduled, pass);
+		}
+		return maxScheduled;
+	}
+
+	// resolves the predecessors of the positions solved at plies - 1, whose value
+	// is plies, and the positions scheduled for this pass; returns 1 if there were
+	// any of the former
+	private int pass(Table table, int plies, int start, int end) {
+		byte mark = (byte) plies;
+		int found = 0;
+		for (int index = start; index < end; index++) {
+			if (table.values[index] == mark) {
+				found = 1;
+				unmove(table, index, plies);
+			}
+			if (table.scheduled[index] == mark && table.values[index] == Tablebase.DRAW) {
+				resolve(table, index, plies);
+			}
+		}
+		return found;
+	}
+
+	// takes back every quiet move of the side that just moved; captures and
+	// promotions come from other endings and are covered by the scheduling
+	private void unmove(Table table, int index, int plies) {
+		int n = table.pieces.length;
+		int mover = (index >>> (6 * n)) ^ 1;
+		long occupied = 0L;
+		for (int i = 0; i < n; i++) {
+			occupied |= 1L << square(index, n, i);
+		}
+		int base = index ^ (1 << (6 * n));
+		for (int i = 0; i < n; i++) {
+			int piece = table.pieces[i];
+			if (BitBoard.colorOf(piece) != mover) {
+				continue;
+			}
+			int to = square(index, n, i);
+			long origins = origins(BitBoard.typeOf(piece), mover, to, occupied);
+			int shift = 6 * (n - 1 - i);
+			while (origins != 0) {
+				int from = Long.numberOfTrailingZeros(origins);
+				origins &= origins - 1;
+				int predecessor = base + ((from - to) << shift);
+				if (table.values[predecessor] == Tablebase.DRAW) {
+					resolve(table, predecessor, plies);
+				}
+			}
+		}
+	}
+
+	private static long origins(int type, int color, int to, long occupied) {
+		long empty = ~occupied;
+		switch (type) {
+		case BitBoard.PAWN:
+			int step = (color == BitBoard.WHITE) ? -8 : 8;
+			int from = to + step;
+			if (from < 8 || from > 55 || (occupied & (1L << from)) != 0) {
+				return 0L;
+			}
+			long origins = 1L << from;
+			int doubleRank = (color == BitBoard.WHITE) ? 3 : 4;
+			if ((to >>> 3) == doubleRank && (occupied & (1L << (from + step))) == 0) {
+				origins |= 1L << (from + step);
+			}
+			return origins;
+		case BitBoard.KNIGHT:
+			return Attacks.knight(to) & empty;
+		case BitBoard.BISHOP:
+			return Attacks.bishop(to, occupied) & empty;
+		case BitBoard.ROOK:
+			return Attacks.rook(to, occupied) & empty;
+		case BitBoard.QUEEN:
+			return Attacks.queen(to, occupied) & empty;
+		default:
+			return Attacks.king(to) & empty;
+		}
+	}
+
+	// an odd pass wins if some move reaches a position lost in fewer plies, an
+	// even pass loses if every move reaches a position won in fewer plies
+	private boolean resolve(Table table, int index, int plies) {
+		BitBoard board = boards.get();
+		int[] moves = moveBuffers.get();
+		setUp(board, table.pieces, index);
+		boolean win = (plies & 1) != 0;
+		int count = board.generateLegalMoves(moves);
+		boolean resolved = !win && count > 0;
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			board.makeMove(move);
+			int value = childValue(table, board, move);
+			board.undoMove(move);
+			boolean shorter = value != Tablebase.DRAW && value - 1 < plies;
+			if (win && shorter && Tablebase.isLoss(value)) {
+				resolved = true;
+				break;
+			}
+			if (!win && !(shorter && Tablebase.isWin(value))) {
+				resolved = false;
+				break;
+			}
+		}
+		clear(board);
+		if (resolved) {
+			table.values[index] = (byte) (plies + 1);
+		}
+		return resolved;
+	}
+
+	private int childValue(Table table, BitBoard board, int move) {
+		if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+			return table.values[(int) Tablebase.index(table.pieces, board, false)] & 0xFF;
+		}
+		Table other = tables.get(TablebaseProber.materialKey(board, false));
+		boolean flip = false;
+		if (other == null) {
+			other = tables.get(TablebaseProber.materialKey(board, true));
+			flip = true;
+		}
+		return other.values[(int) Tablebase.index(other.pieces, board, flip)] & 0xFF;
+	}
+
+	// false, with the board left empty, when two pieces share a square or a pawn
+	// stands on the first or last rank
+	private static boolean setUp(BitBoard board, int[] pieces, int index) {
+		int n = pieces.length;
+		long occupied = 0L;
+		for (int i = 0; i < n; i++) {
+			long bit = 1L << square(index, n, i);
+			if ((occupied & bit) != 0
+					|| (BitBoard.typeOf(pieces[i]) == BitBoard.PAWN && (bit & RANK_1_AND_8) != 0)) {
+				return false;
+			}
+			occupied |= bit;
+		}
+		for (int i = 0; i < n; i++) {
+			board.placePiece(BitBoard.colorOf(pieces[i]), BitBoard.typeOf(pieces[i]), square(index, n, i));
+		}
+		board.setSideToMove(index >>> (6 * n));
+		return true;
+	}
+
+	private static void clear(BitBoard board) {
+		long occupied = board.getOccupied();
+		while (occupied != 0) {
+			board.removePiece(Long.numberOfTrailingZeros(occupied));
+			occupied &= occupied - 1;
+		}
+	}
+
+	private static int square(int index, int n, int i) {
+		return (index >>> (6 * (n - 1 - i))) & 63;
+	}
+
+	private int forEachChunk(int size, ChunkTask task) {
+		int chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+		int chunkSize = (size + chunks - 1) / chunks;
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int start = 0; start < size; start += chunkSize) {
+			int s = start;
+			int e = Math.min(size, start + chunkSize);
+			tasks.add(() -> task.run(s, e));
+		}
+		int max = 0;
+		try {
+			for (Future<Integer> result : pool.invokeAll(tasks)) {
+				max = Math.max(max, result.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Tablebase generation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Tablebase generation failed", e.getCause());
+		}
+		return max;
+	}
+
+	private static int count(long key, int piece) {
+		return (int) (key >>> (piece * 4)) & 15;
+	}
+
+	// the kings first, then each side's pieces from the strongest
+	private static int[] pieces(long key) {
+		int n = 0;
+		for (int piece = 0; piece < 12; piece++) {
+			n += count(key, piece);
+		}
+		if (n > MAX_PIECES) {
+			throw new IllegalArgumentException("At most " + MAX_PIECES + " pieces can be generated");
+		}
+		int[] pieces = new int[n];
+		int i = 0;
+		for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+			for (int type = BitBoard.KING; type >= BitBoard.PAWN; type--) {
+				for (int j = count(key, color * 6 + type); j > 0; j--) {
+					pieces[i++] = color * 6 + type;
+				}
+			}
+		}
+		return pieces;
+	}
+
+	// the side with more of the strongest pieces plays white
+	private static long canonical(long key) {
+		long white = key & 0xFFFFFFL;
+		long black = key >>> 24;
+		return (white >= black) ? key : black | (white << 24);
+	}
+
+	static long parseMaterial(String material) {
+		long key = 0L;
+		int color = -1;
+		for (int i = 0; i < material.length(); i++) {
+			char c = material.charAt(i);
+			if (c == 'v') {
+				continue;
+			}
+			int type = TablebaseProber.PIECE_LETTERS.indexOf(c);
+			if (type < 0) {
+				throw new IllegalArgumentException("Unknown piece " + c + " in " + material);
+			}
+			if (type == BitBoard.KING) {
+				color++;
+			}
+			if (color < 0 || color > BitBoard.BLACK) {
+				throw new IllegalArgumentException("Expected one king per side in " + material);
+			}
+			key += 1L << ((color * 6 + type) * 4);
+		}
+		if (color != BitBoard.BLACK) {
+			throw new IllegalArgumentException("Expected one king per side in " + material);
+		}
+		return key;
+	}
+}
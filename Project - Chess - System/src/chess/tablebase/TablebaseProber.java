@@ -0,0 +1,121 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+
+import chess.BitBoard;
+
+// Looks positions up in the tablebase files of a directory. Files are named after
+// their material, white first, as in KQvK.ctb, and are opened the first time a
+// position with that material is probed. A table answers for the mirrored
+// material too, so KvKQ is read from KQvK with the colors swapped.
+public class TablebaseProber {
+
+	public static final String EXTENSION = ".ctb";
+	public static final int DEFAULT_CACHE_BLOCKS = 1024;
+	public static final int NOT_FOUND = -1;
+
+	static final String PIECE_LETTERS = "PNBRQK";
+
+	private Path directory;
+	private int maxPieces;
+	private BlockCache cache;
+	private AtomicInteger nextId = new AtomicInteger();
+	// a material key maps to its table, or to nothing when there is no file
+	private ConcurrentHashMap<Long, Optional<Tablebase>> tables = new ConcurrentHashMap<>();
+
+	public TablebaseProber(Path directory, int maxPieces) {
+		this(directory, maxPieces, DEFAULT_CACHE_BLOCKS);
+	}
+
+	public TablebaseProber(Path directory, int maxPieces, int cacheBlocks) {
+		if (!Files.isDirectory(directory)) {
+			throw new IllegalArgumentException("No tablebase directory " + directory);
+		}
+		this.directory = directory;
+		this.maxPieces = maxPieces;
+		cache = new BlockCache(cacheBlocks);
+	}
+
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+
+	public BlockCache getCache() {
+		return cache;
+	}
+
+	// the value stored for the position, see Tablebase, or NOT_FOUND when it has
+	// too many pieces, castling or en passant rights, or no table covers it
+	public int probe(BitBoard position) {
+		if (position.getPieceCount() > maxPieces || position.getCastlingRights() != 0
+				|| position.getEnPassantSquare() != BitBoard.NO_SQUARE) {
+			return NOT_FOUND;
+		}
+		long key = materialKey(position, false);
+		boolean flip = false;
+		Tablebase table = table(key);
+		if (table == null) {
+			key = materialKey(position, true);
+			flip = true;
+			table = table(key);
+			if (table == null) {
+				return NOT_FOUND;
+			}
+		}
+		try {
+			return table.probe(table.index(position, flip), cache);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt tablebase " + name(key), e);
+		}
+	}
+
+	private Tablebase table(long key) {
+		return tables.computeIfAbsent(key, k -> {
+			Path path = directory.resolve(name(k) + EXTENSION);
+			if (!Files.isRegularFile(path)) {
+				return Optional.empty();
+			}
+			try {
+				return Optional.of(new Tablebase(path, nextId.getAndIncrement()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).orElse(null);
+	}
+
+	// four bits of count for each of the twelve pieces
+	static long materialKey(BitBoard position, boolean flip) {
+		long key = 0L;
+		for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+			for (int type = BitBoard.PAWN; type <= BitBoard.KING; type++) {
+				int piece = (color ^ (flip ? 1 : 0)) * 6 + type;
+				key |= (long) position.getPieceCount(color, type) << (piece * 4);
+			}
+		}
+		return key;
+	}
+
+	// strongest pieces first on each side, as in KRPvKR
+	public static String name(long materialKey) {
+		StringBuilder sb = new StringBuilder();
+		for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+			if (color == BitBoard.BLACK) {
+				sb.append('v');
+			}
+			for (int type = BitBoard.KING; type >= BitBoard.PAWN; type--) {
+				int count = (int) (materialKey >>> ((color * 6 + type) * 4)) & 15;
+				for (int i = 0; i < count; i++) {
+					sb.append(PIECE_LETTERS.charAt(type));
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
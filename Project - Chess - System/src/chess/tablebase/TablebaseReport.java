@@ -0,0 +1,81 @@
+package chess.tablebase;
+
+public class TablebaseReport {
+
+	private String name;
+	private long positions;
+	private long wins;
+	private long losses;
+	private long draws;
+	private long illegal;
+	private int longestMate;
+	private long millis;
+	private long peakMemory;
+
+	TablebaseReport(String name, byte[] values, long millis, long peakMemory) {
+		this.name = name;
+		this.millis = millis;
+		this.peakMemory = peakMemory;
+		positions = values.length;
+		for (byte b : values) {
+			int value = b & 0xFF;
+			if (value == Tablebase.ILLEGAL) {
+				illegal++;
+			} else if (value == Tablebase.DRAW) {
+				draws++;
+			} else {
+				if (Tablebase.isWin(value)) {
+					wins++;
+				} else {
+					losses++;
+				}
+				longestMate = Math.max(longestMate, value - 1);
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getPositions() {
+		return positions;
+	}
+
+	public long getWins() {
+		return wins;
+	}
+
+	public long getLosses() {
+		return losses;
+	}
+
+	public long getDraws() {
+		return draws;
+	}
+
+	public long getIllegal() {
+		return illegal;
+	}
+
+	// in plies
+	public int getLongestMate() {
+		return longestMate;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	// the most heap in use at any time while the ending was generated, in bytes
+	public long getPeakMemory() {
+		return peakMemory;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %,d positions, %,d wins, %,d losses, %,d draws, %,d illegal, "
+				+ "longest mate %d plies, %.2f s, peak heap %,d MB", name, positions, wins, losses, draws, illegal,
+				longestMate, millis / 1000.0, peakMemory >> 20);
+	}
+}
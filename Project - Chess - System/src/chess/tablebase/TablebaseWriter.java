@@ -0,0 +1,80 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+// writes one value byte per position in the layout Tablebase maps
+public class TablebaseWriter {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	private int[] pieces;
+	private byte[] values;
+	private int blockSize;
+
+	public TablebaseWriter(int[] pieces, byte[] values) {
+		this(pieces, values, DEFAULT_BLOCK_SIZE);
+	}
+
+	public TablebaseWriter(int[] pieces, byte[] values, int blockSize) {
+		if (pieces.length > Tablebase.MAX_PIECES) {
+			throw new IllegalArgumentException("At most " + Tablebase.MAX_PIECES + " pieces fit in a tablebase");
+		}
+		this.pieces = pieces;
+		this.values = values;
+		this.blockSize = blockSize;
+	}
+
+	public void write(Path path) throws IOException {
+		int blockCount = (values.length + blockSize - 1) / blockSize;
+		ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE + (blockCount + 1) * 8)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(Tablebase.MAGIC);
+		header.putInt(pieces.length);
+		for (int i = 0; i < Tablebase.MAX_PIECES; i++) {
+			header.put((byte) ((i < pieces.length) ? pieces[i] : 0));
+		}
+		header.putInt(blockSize);
+		header.putInt(blockCount);
+		header.putLong(values.length);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			// the blocks go after the offset table, which is filled in as they are written
+			long offset = header.capacity();
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			byte[] compressed = new byte[blockSize + blockSize / 100 + 64];
+			try {
+				for (int block = 0; block < blockCount; block++) {
+					header.putLong(offset);
+					int start = block * blockSize;
+					deflater.reset();
+					deflater.setInput(values, start, Math.min(blockSize, values.length - start));
+					deflater.finish();
+					while (!deflater.finished()) {
+						int n = deflater.deflate(compressed);
+						offset += write(channel, ByteBuffer.wrap(compressed, 0, n), offset);
+					}
+				}
+			} finally {
+				deflater.end();
+			}
+			header.putLong(offset);
+			header.flip();
+			write(channel, header, 0);
+		}
+	}
+
+	private static int write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		return written;
+	}
+}